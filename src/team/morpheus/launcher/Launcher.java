@@ -3,13 +3,16 @@ package team.morpheus.launcher;
 import club.minnced.discord.rpc.DiscordEventHandlers;
 import club.minnced.discord.rpc.DiscordRPC;
 import club.minnced.discord.rpc.DiscordRichPresence;
-import com.google.gson.Gson;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 import team.morpheus.launcher.logging.MyLogger;
+import team.morpheus.launcher.model.AssetIndex;
+import team.morpheus.launcher.model.LaunchPlan;
 import team.morpheus.launcher.model.LauncherVariables;
+import team.morpheus.launcher.model.LibraryArtifact;
+import team.morpheus.launcher.model.MavenCoordinate;
 import team.morpheus.launcher.model.products.MojangProduct;
 import team.morpheus.launcher.utils.*;
 
@@ -19,12 +22,13 @@ import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Enumeration;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -32,192 +36,252 @@ public class Launcher {
 
     private static final MyLogger log = new MyLogger(Launcher.class);
     private JSONParser jsonParser = new JSONParser();
+    private LauncherVariables variables;
     private File gameFolder, assetsFolder;
+    private VerificationIndex verifier;
+    private LibraryResolver libraries;
 
-    private MojangProduct vanilla;
-    private MojangProduct.Version target;
+    private VersionManifest versions;
+    private VersionGraph graph;
 
     private MojangProduct.Game game; // Vanilla / Optifine / Fabric / Forge
-    private MojangProduct.Game inherited; // just Vanilla (is parent of modloader)
+    private MojangProduct.Game inherited; // just Vanilla (is the root of a modloader inheritsFrom chain)
 
     public Launcher(LauncherVariables variables) throws Exception {
-        boolean isLatestVersion = false;
-        try {
-            /* Get all versions from mojang */
-            vanilla = retrieveVersions();
-
-            /* Find version by name gave by user */
-            String targetName = variables.getMcVersion();
-
-            if (variables.getMcVersion().equalsIgnoreCase("latest")) {
-                targetName = vanilla.latest.release;
-                isLatestVersion = true;
-            }
-            if (variables.getMcVersion().equalsIgnoreCase("snapshot")) {
-                targetName = vanilla.latest.snapshot;
-                isLatestVersion = true;
-            }
+        this.variables = variables;
 
-            target = findVersion(vanilla, targetName);
-        } catch (Exception e) {
-            log.error("Cannot download/parse mojang versions json");
-        }
+        /* Shared connection pool for every request made while preparing the game */
+        HttpTransport.setDefault(HttpTransport.create(variables.getDownloadThreads()));
+        /* In-flight downloads adapt to the link, the given thread count is their upper bound */
+        ConcurrencyController.setDefault(new ConcurrencyController(variables.getDownloadThreads()));
+        /* Worker threads shared by every phase, the io lane is as wide as the download upper bound */
+        TaskScheduler.setDefault(new TaskScheduler(variables.getDownloadThreads()));
+        /* Optional download mirrors from .minecraft/mirrors.properties, tried after the official urls */
+        Mirrors.load(new File(System.getProperty("morpheus.mirrors", String.format("%s/mirrors.properties", variables.getGamePath()))));
 
         // Make .minecraft/
         gameFolder = makeDirectory(variables.getGamePath());
 
+        // Cache metadata responses in .minecraft/cache/http/
+        HttpCache.setDefault(new HttpCache(new File(String.format("%s/cache/http", gameFolder.getPath()))));
+
+        // Load the hashes of already verified files from .minecraft/cache/
+        verifier = new VerificationIndex(new File(String.format("%s/cache/verification.idx", gameFolder.getPath())), variables.isVerifyFiles());
+        libraries = new LibraryResolver(new File(String.format("%s/libraries", gameFolder.getPath())), verifier);
+        versions = new VersionManifest(new File(String.format("%s/cache/version_manifest.json", gameFolder.getPath())), Main.getVersionsURL());
+        graph = VersionGraph.of(new File(String.format("%s/versions", gameFolder.getPath())));
+
         // Make .minecraft/assets/
         assetsFolder = makeDirectory(String.format("%s/assets", gameFolder.getPath()));
 
         // Make .minecraft/versions/<gameVersion>
         File versionPath = makeDirectory(String.format("%s/versions/%s", gameFolder.getPath(), variables.getMcVersion()));
 
-        // Download json to .minecraft/versions/<gameVersion>/<gameVersion.json
-        File jsonFile = new File(String.format("%s/%s.json", versionPath.getPath(), variables.getMcVersion()));
-        if (target != null && target.url != null) {
-            /* Extract json file hash from download url */
-            String jsonHash = target.url.substring(target.url.lastIndexOf("/") - 40, target.url.lastIndexOf("/"));
-
-            /* if the json doesn't exist or its hash is invalidated, download from mojang repo */
-            /* isLatestVersion is put to skip sha check when "latest" or "snapshot" is used */
-            if (!jsonFile.exists() || jsonFile.exists() && !jsonHash.equals(CryptoEngine.fileHash(jsonFile, "SHA-1")) || isLatestVersion) {
-                ParallelTasks tasks = new ParallelTasks();
-                tasks.add(new DownloadFileTask(new URL(target.url), jsonFile.getPath()));
-                tasks.go();
-            }
+        // Make natives dir .minecraft/versions/<gameVersion>/natives/
+        File nativesPath = makeDirectory(String.format("%s/natives", versionPath.getPath()));
 
-            /* overwrites id field in json to get better recognition by gui */
-            if (isLatestVersion) overwriteJsonId(variables.getMcVersion(), jsonFile);
-        }
-        String mcLowercase = variables.getMcVersion().toLowerCase();
-        if (!jsonFile.exists()) {
-            if (mcLowercase.contains("fabric")) {
-                doFabricSetup(mcLowercase, jsonFile);
-            } else if (mcLowercase.contains("optiforge")) {
-                doOptiForgeSetup(mcLowercase, jsonFile);
-            } else if (mcLowercase.contains("forge")) {
-                doForgeSetup(mcLowercase, jsonFile);
-                overwriteJsonId(variables.getMcVersion(), jsonFile);
-            } else if (mcLowercase.contains("optifine")) {
-                doOptifineSetup(variables.getMcVersion(), jsonFile);
+        File jsonFile = new File(String.format("%s/%s.json", versionPath.getPath(), variables.getMcVersion()));
+        File clientJar = new File(String.format("%s/%s.jar", versionPath.getPath(), variables.getMcVersion()));
+        boolean launching = Main.getVanilla() != null;
+
+        /* A plan saved by a previous launch skips the whole preparation when none of its inputs changed,
+         * aliases always go through it as they may point to a new version */
+        File planFile = new File(versionPath, "launch.plan");
+        String context = String.format("%s|%s|%s|%s|%s", Main.build, System.getProperty("os.name"), OSUtils.getOSArch(), variables.isModded(), gameFolder.getAbsolutePath());
+        boolean usePlan = launching && !variables.isVerifyFiles() && !versions.isAlias(variables.getMcVersion());
+        if (usePlan) {
+            LaunchPlan plan = LaunchPlanStore.load(planFile, context);
+            if (plan != null && LaunchPlanStore.isValid(plan, verifier, versions) && assetsPresent(plan.getAssetIndex())) {
+                log.info(String.format("Launching %s from its launch plan", plan.getVersionId()));
+                launch(plan);
+                return;
             }
         }
 
-        /* Serialize the json file to read its properties */
-        game = retrieveGame(jsonFile);
+        /* Launch preparation is a dependency graph, each phase starts as soon as what it needs is ready,
+         * e.g. jar, libraries, natives and assets all wait just for the parsed json and then run side by side */
+        TaskGraph prepare = new TaskGraph("Launch preparation");
 
-        /* Download vanilla jar to .minecraft/versions/<gameVersion>/<gameVersion.jar */
-        File jarFile = new File(String.format("%s/%s.jar", versionPath.getPath(), variables.getMcVersion()));
-        if (game.downloads != null && game.downloads.client != null) {
-            String jarHash = game.downloads.client.sha1;
-
-            /* if the vanilla jar doesn't exist or its hash is invalidated, download from mojang repo */
-            if (!jarFile.exists() || jarFile.exists() && !jarHash.equals(CryptoEngine.fileHash(jarFile, "SHA-1"))) {
-                ParallelTasks tasks = new ParallelTasks();
-                tasks.add(new DownloadFileTask(new URL(game.downloads.client.url), jarFile.getPath()));
-                tasks.go();
+        /* Get all versions from mojang, or from the cached copy when recent enough or when offline */
+        TaskGraph.Node<VersionManifest> manifest = prepare.io("version manifest", () -> {
+            try {
+                versions.load();
+                return versions;
+            } catch (IOException e) {
+                log.error(String.format("Cannot download mojang versions list and there is no cached copy: %s", RetryPolicy.describe(e)));
+                return null;
             }
-        }
+        });
 
-        // Make natives dir .minecraft/versions/<gameVersion>/natives/
-        File nativesPath = makeDirectory(String.format("%s/natives", versionPath.getPath()));
+        /* Serialize the json file to read its properties, downloading or installing it first */
+        TaskGraph.Node<MojangProduct.Game> version = prepare.io("version json", () -> retrieveVersionJson(manifest.get(), jsonFile), manifest);
+
+        /* Download vanilla jar to .minecraft/versions/<gameVersion>/<gameVersion.jar */
+        prepare.io("client jar", () -> downloadClient(version.get(), clientJar), version);
 
         /* If internet is available download the parent (vanilla) version when you launch a modloader
          * Example: downloads the "1.19.2" while you launch "fabric-loader-0.14.21-1.19.2"
          * Because inside optifine, fabric or forge json there is a field called "inheritsFrom"
-         * "inheritsFrom" basically describes on which vanilla version the modloader bases of */
-        if (game.inheritsFrom != null) {
-            if (vanilla != null) target = findVersion(vanilla, game.inheritsFrom);
-
-            File inheritedVersionPath = makeDirectory(String.format("%s/versions/%s", gameFolder.getPath(), game.inheritsFrom));
-
-            /* Download the vanilla json which modloader put its basis on */
-            File inheritedjsonFile = new File(String.format("%s/%s.json", inheritedVersionPath.getPath(), game.inheritsFrom));
-            if (target != null && target.url != null) {
-                String jsonHash = target.url.substring(target.url.lastIndexOf("/") - 40, target.url.lastIndexOf("/"));
-
-                /* if the vanilla json doesn't exist or its hash is invalidated, download from mojang repo */
-                if (!inheritedjsonFile.exists() || inheritedjsonFile.exists() && !jsonHash.equals(CryptoEngine.fileHash(inheritedjsonFile, "SHA-1"))) {
-                    ParallelTasks tasks = new ParallelTasks();
-                    tasks.add(new DownloadFileTask(new URL(target.url), inheritedjsonFile.getPath()));
-                    tasks.go();
-                }
-            }
-
-            inherited = retrieveGame(inheritedjsonFile);
-
-            /* Download the vanilla client jar when you launch a modloader that put its basis on it */
-            File inheritedjarFile = new File(String.format("%s/%s.jar", inheritedVersionPath.getPath(), game.inheritsFrom));
-            if (inherited.downloads != null && inherited.downloads.client != null) {
-                String jarHash = inherited.downloads.client.sha1;
+         * "inheritsFrom" basically describes on which version the modloader bases of, which can be another modloader
+         * (e.g. optiforge -> forge -> vanilla) so the whole chain is walked up to vanilla */
+        TaskGraph.Node<VersionGraph.Chain> chain = prepare.io("inherited jsons", () -> graph.resolve(version.get(), this::retrieveInherited), manifest, version);
+
+        /* Download the vanilla client jar when you launch a modloader that put its basis on it */
+        prepare.io("inherited client jar", () -> {
+            MojangProduct.Game root = chain.get().getInherited();
+            if (root == null) return null;
+            return downloadClient(root, new File(String.format("%s/versions/%s/%s.jar", gameFolder.getPath(), root.id, root.id)));
+        }, chain);
+
+        /* Download natives, always from the vanilla version even when you launch modloader */
+        prepare.io("natives", () -> {
+            setupNatives(chain.get().getRoot(), nativesPath);
+            return null;
+        }, chain);
 
-                if (!inheritedjarFile.exists() || inheritedjarFile.exists() && !jarHash.equals(CryptoEngine.fileHash(inheritedjarFile, "SHA-1"))) {
-                    ParallelTasks tasks = new ParallelTasks();
-                    tasks.add(new DownloadFileTask(new URL(inherited.downloads.client.url), inheritedjarFile.getPath()));
-                    tasks.go();
-                }
-            }
-        }
+        /* Download client assets */
+        prepare.io("assets", () -> {
+            setupAssets(chain.get().getRoot());
+            return null;
+        }, chain);
+
+        /* Modloader libraries only need its own json, the ones of the other modloaders in the chain and vanilla ones wait for it */
+        TaskGraph.Node<ClasspathModel> modloaderLibraries = prepare.io("modloader libraries", () ->
+                launching && variables.isModded() ? setupLibraries(version.get().libraries, true) : new ClasspathModel(), version);
+        TaskGraph.Node<ClasspathModel> inheritedModloaderLibraries = prepare.io("inherited modloader libraries", () ->
+                launching && variables.isModded() ? setupLibraries(chain.get().getIntermediateLibraries(), true) : new ClasspathModel(), chain);
+        TaskGraph.Node<ClasspathModel> vanillaLibraries = prepare.io("libraries", () ->
+                launching ? setupLibraries(chain.get().getRoot().libraries, false) : new ClasspathModel(), chain);
+
+        prepare.await();
+        game = version.get();
+        inherited = chain.get().getInherited();
+        File jarFile = clientJar;
 
         /* This variable returns ALWAYS the vanilla version, even when you launch modloader */
         MojangProduct.Game vanilla = (inherited != null ? inherited : game);
 
-        /* Download natives */
-        setupNatives(vanilla, nativesPath);
-
-        /* Download client assets */
-        setupAssets(vanilla);
-
-        /* Setup the libraries needed to load vanilla minecraft */
-        List<URL> paths = new ArrayList<>();
-        /* Prepare required client arguments */
-        List<String> gameargs = new ArrayList<>();
-
         /* Prepare launching arguments for launching minecraft
-         * replaces placeholders with real values */
+         * replaces the version placeholders with real values, the session ones are replaced at launch */
+        List<String> arguments = new ArrayList<>();
         for (String s : argbuilder(vanilla)) {
-            s = s.replace("${auth_player_name}", Main.getMojangSession().getUsername()) // player username
-                    .replace("${auth_session}", "1234") // what is this?
+            s = s.replace("${auth_session}", "1234") // what is this?
                     .replace("${version_name}", game.id) // Version launched
                     .replace("${game_directory}", gameFolder.getPath()) // Game root dir
                     .replace("${game_assets}", assetsFolder.getPath()) // Game assets root dir
                     .replace("${assets_root}", assetsFolder.getPath()) // Same as the previous one
                     .replace("${assets_index_name}", vanilla.assetIndex.id) // assets index json filename
-                    .replace("${auth_uuid}", Main.getMojangSession().getUUID()) // player uuid
-                    .replace("${auth_access_token}", Main.getMojangSession().getSessionToken()) // player token for premium
                     .replace("${user_type}", "msa").replace("${version_type}", game.type) // type of premium auth
                     .replace("${user_properties}", "{}"); // unknown
-            gameargs.add(s);
+            arguments.add(s);
         }
-        /* Append modloader launching arguments to vanilla */
-        if (inherited != null) {
-            for (String s : argbuilder(game)) {
-                if (!gameargs.contains(s)) {
-                    gameargs.add(s);
-                }
-            }
+        /* Modloader launching arguments, appended to vanilla from the root down to the launched version */
+        List<String> extraArguments = new ArrayList<>();
+        for (MojangProduct.Game modloader : inherited != null ? chain.get().getModloaders() : Collections.<MojangProduct.Game>emptyList()) {
+            extraArguments.addAll(Arrays.asList(argbuilder(modloader)));
         }
 
-        /* Put the client jar to url list */
-        if (Main.getVanilla() != null) {
+        List<File> classpath = new ArrayList<>();
+        if (launching) {
             if (variables.isModded()) {
-                paths.addAll(setupLibraries(game));  /* Append modloader libraries if the game is modded */
-                paths.addAll(setupLibraries(vanilla)); /* Append vanilla libraries */
+                /* Modloader libraries first, then the vanilla ones, a library of both sides is loaded once */
+                ClasspathModel model = new ClasspathModel();
+                model.merge(modloaderLibraries.get());
+                model.merge(inheritedModloaderLibraries.get());
+                model.merge(vanillaLibraries.get());
+                classpath.addAll(model.getFiles());
 
                 /* Due to unknown modloader reasons, we need to load even the inherited (vanilla) version */
                 jarFile = new File(String.format("%s/%s.jar", (new File(String.format("%s/versions/%s", gameFolder.getPath(), vanilla.id))).getPath(), vanilla.id));
-
-                /* Set the java.class.path to make modloaders like forge/fabric to work */
-                makeModloaderCompatibility(paths, jarFile);
             } else {
-                paths.addAll(setupLibraries(vanilla)); /* Append vanilla libraries */
+                classpath.addAll(vanillaLibraries.get().getFiles()); /* Append vanilla libraries */
             }
+        }
+
+        File assetIndex = new File(String.format("%s/indexes/%s.json", assetsFolder.getPath(), vanilla.assetIndex.id));
+        LaunchPlan plan = new LaunchPlan(context, game.id, vanilla.id, chain.get().getMainClass(), arguments, extraArguments, classpath, jarFile, launching && variables.isModded(), nativesPath, assetIndex,
+                planInputs(jsonFile, chain.get(), assetIndex, classpath, jarFile, nativesPath));
+        if (usePlan && plan.getInputs() != null) LaunchPlanStore.save(planFile, plan);
+        launch(plan);
+    }
+
+    /* The files a plan is derived from, null when one of them is missing: that launch has to be prepared again */
+    private List<LaunchPlan.Input> planInputs(File jsonFile, VersionGraph.Chain chain, File assetIndex, List<File> classpath, File jarFile, File nativesFolder) throws IOException {
+        List<LaunchPlan.Input> inputs = new ArrayList<>();
+        try {
+            inputs.add(LaunchPlanStore.input(jsonFile, chain.getGame().id, verifier));
+            for (MojangProduct.Game level : chain.getLevels().subList(1, chain.getLevels().size())) {
+                inputs.add(LaunchPlanStore.input(new File(String.format("%s/versions/%s/%s.json", gameFolder.getPath(), level.id, level.id)), level.id, verifier));
+            }
+            inputs.add(LaunchPlanStore.input(assetIndex, null, verifier));
+            for (File library : classpath) inputs.add(LaunchPlanStore.input(library, null, verifier));
+            inputs.add(LaunchPlanStore.input(jarFile, null, verifier));
+            File natives = new File(nativesFolder, ".natives");
+            if (natives.isFile()) inputs.add(LaunchPlanStore.input(natives, null, verifier));
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            log.debug(String.format("Not saving the launch plan, %s is missing", e.getMessage()));
+            return null;
+        }
+        return inputs;
+    }
+
+    /* Cheap check for the launch plan: every object of the index is where the game reads it, with its size, nothing is hashed */
+    private boolean assetsPresent(File indexFile) throws IOException {
+        if (!indexFile.isFile()) return false;
+        AssetIndex index = AssetIndexReader.load(indexFile);
+        boolean isLegacy = indexFile.getName().contains("pre-1.6");
+        for (int i = 0; i < index.size(); i++) {
+            String hash = index.getHash(i);
+            File file = isLegacy ? new File(String.format("%s/resources/%s", gameFolder.getPath(), index.getName(i)))
+                    : new File(String.format("%s/objects/%s/%s", assetsFolder.getPath(), hash.substring(0, 2), hash));
+            if (file.length() != index.getSize(i) || !file.isFile()) {
+                log.info(String.format("Launch plan outdated, asset %s is missing", index.getName(i)));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Last step of every launch, whether the plan was just made or loaded from disk */
+    private void launch(LaunchPlan plan) throws Exception {
+        boolean launching = Main.getVanilla() != null;
+
+        /* Setup the libraries needed to load vanilla minecraft */
+        List<URL> paths = new ArrayList<>();
+        /* Prepare required client arguments */
+        List<String> gameargs = new ArrayList<>();
+        for (String s : plan.getArguments()) {
+            s = s.replace("${auth_player_name}", Main.getMojangSession().getUsername()) // player username
+                    .replace("${auth_uuid}", Main.getMojangSession().getUUID()) // player uuid
+                    .replace("${auth_access_token}", Main.getMojangSession().getSessionToken()); // player token for premium
+            gameargs.add(s);
+        }
+        /* Append modloader launching arguments to vanilla */
+        for (String s : plan.getExtraArguments()) {
+            if (!gameargs.contains(s)) {
+                gameargs.add(s);
+            }
+        }
+
+        File jarFile = plan.getClientJar();
+        /* Put the client jar to url list */
+        if (launching) {
+            loadLibraries(paths, plan.getClasspath());
+
+            /* Set the java.class.path to make modloaders like forge/fabric to work */
+            if (plan.isCompatibility()) makeModloaderCompatibility(paths, jarFile);
 
             if (paths.add(jarFile.toURI().toURL())) log.info(String.format("loading: %s", jarFile.toURI().toURL()));
 
-            initDiscordRPC(buildRPCstatus(mcLowercase, vanilla.id));
+            initDiscordRPC(buildRPCstatus(variables.getMcVersion().toLowerCase(), plan.getBaseVersion()));
         }
 
+        /* Persist what has been verified so far, next launch won't rehash unchanged files */
+        verifier.save();
+        ConcurrencyController.getDefault().report();
+
+        if (variables.isClassArchive() && !variables.isClassPath()) log.warn("Class archive needs -c, the game is loaded in this jvm");
+
         /* Due compatibility issues some modloaders should run through -cp instead of using dynamic classloading */
         if (variables.isClassPath()) {
             /* Build classpath */
@@ -240,9 +304,15 @@ public class Launcher {
             command.add(jnapath);
             command.add(lwjglpath);
             command.add(nettypath);
+            /* Opt-in AppCDS, recorded by the first launch of this classpath and mapped by the next ones */
+            ClassArchive archive = null;
+            if (variables.isClassArchive()) {
+                archive = new ClassArchive(new File(String.format("%s/versions/%s/cds", gameFolder.getPath(), plan.getVersionId())), new File(String.format("%s/cache/java.properties", gameFolder.getPath())), "java");
+                command.addAll(archive.options(classPath.toString()));
+            }
             command.add("-cp");
             command.add(classPath.toString());
-            command.add(game.mainClass);
+            command.add(plan.getMainClass());
             ProcessBuilder processBuilder = new ProcessBuilder(command);
             processBuilder.command().addAll(gameargs);
 
@@ -254,9 +324,10 @@ public class Launcher {
             BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
             String line;
             while ((line = reader.readLine()) != null) System.out.println(line);
+            if (archive != null) archive.finish(process.waitFor());
         } else {
             /* Launch through classloader */
-            doClassloading(paths, gameargs, game.mainClass);
+            doClassloading(paths, gameargs, plan.getMainClass(), new File(String.format("%s/versions/%s/classloader.idx", gameFolder.getPath(), plan.getVersionId())));
         }
     }
 
@@ -271,14 +342,83 @@ public class Launcher {
         writer.close();
     }
 
-    private void doFabricSetup(String mcVersion, File jsonFile) throws MalformedURLException, InterruptedException {
+    /* Resolves the json of the launched version: downloaded when missing or outdated, installed when it's a modloader */
+    private MojangProduct.Game retrieveVersionJson(VersionManifest manifest, File jsonFile) throws Exception {
+        /* Find version by name gave by user, "latest" and "snapshot" are resolved by the manifest */
+        boolean isLatestVersion = manifest != null && manifest.isAlias(variables.getMcVersion());
+        MojangProduct.Version target = null;
+        if (manifest != null) {
+            /* a version not installed yet may be newer than the cached list */
+            target = jsonFile.exists() ? manifest.find(variables.getMcVersion()) : manifest.findOrRefresh(variables.getMcVersion());
+        }
+
+        // Download json to .minecraft/versions/<gameVersion>/<gameVersion.json
+        if (target != null && target.url != null) {
+            /* Extract json file hash from download url */
+            String jsonHash = target.url.substring(target.url.lastIndexOf("/") - 40, target.url.lastIndexOf("/"));
+
+            /* if the json doesn't exist or its hash is invalidated, download from mojang repo */
+            /* isLatestVersion is put to skip sha check when "latest" or "snapshot" is used */
+            if (!verifier.verify(jsonFile, jsonHash) || isLatestVersion) {
+                download(new DownloadFileTask(new URL(target.url), jsonFile.getPath(), -1, jsonHash, verifier));
+            }
+
+            /* overwrites id field in json to get better recognition by gui */
+            if (isLatestVersion) overwriteJsonId(variables.getMcVersion(), jsonFile);
+        }
+        String mcLowercase = variables.getMcVersion().toLowerCase();
+        if (!jsonFile.exists()) {
+            if (mcLowercase.contains("fabric")) {
+                doFabricSetup(mcLowercase, jsonFile);
+            } else if (mcLowercase.contains("optiforge")) {
+                doOptiForgeSetup(mcLowercase, jsonFile);
+            } else if (mcLowercase.contains("forge")) {
+                doForgeSetup(mcLowercase, jsonFile);
+                overwriteJsonId(variables.getMcVersion(), jsonFile);
+            } else if (mcLowercase.contains("optifine")) {
+                doOptifineSetup(variables.getMcVersion(), jsonFile);
+            }
+        }
+        return graph.load(jsonFile);
+    }
+
+    /* Downloads the json of a version a modloader bases on when mojang has it, a modloader parent must be installed already */
+    private File retrieveInherited(String id) throws Exception {
+        MojangProduct.Version target = versions.find(id);
+
+        File inheritedVersionPath = makeDirectory(String.format("%s/versions/%s", gameFolder.getPath(), id));
+
+        /* Download the vanilla json which modloader put its basis on */
+        File inheritedjsonFile = new File(String.format("%s/%s.json", inheritedVersionPath.getPath(), id));
+        if (target != null && target.url != null) {
+            String jsonHash = target.url.substring(target.url.lastIndexOf("/") - 40, target.url.lastIndexOf("/"));
+
+            /* if the vanilla json doesn't exist or its hash is invalidated, download from mojang repo */
+            if (!verifier.verify(inheritedjsonFile, jsonHash)) {
+                download(new DownloadFileTask(new URL(target.url), inheritedjsonFile.getPath(), -1, jsonHash, verifier));
+            }
+        }
+        return inheritedjsonFile;
+    }
+
+    /* if the client jar doesn't exist or its hash is invalidated, download from mojang repo */
+    private File downloadClient(MojangProduct.Game game, File jarFile) throws Exception {
+        if (game.downloads != null && game.downloads.client != null) {
+            String jarHash = game.downloads.client.sha1;
+            if (!verifier.verify(jarFile, jarHash)) {
+                download(new DownloadFileTask(new URL(game.downloads.client.url), jarFile.getPath(), game.downloads.client.size, jarHash, verifier));
+            }
+        }
+        return jarFile;
+    }
+
+    private void doFabricSetup(String mcVersion, File jsonFile) throws IOException {
         String[] split = mcVersion.split("-");
-        ParallelTasks tasks = new ParallelTasks();
-        tasks.add(new DownloadFileTask(new URL(String.format("%s/loader/%s/%s/profile/json", Main.getFabricVersionsURL(), split[3], split[2])), jsonFile.getPath()));
-        tasks.go();
+        String profile = Utils.makeGetRequest(new URL(String.format("%s/loader/%s/%s/profile/json", Main.getFabricVersionsURL(), split[3], split[2])));
+        Files.write(jsonFile.toPath(), profile.getBytes(StandardCharsets.UTF_8));
     }
 
-    private void doOptiForgeSetup(String mcVersion, File jsonFile) throws IOException, ParseException, InterruptedException {
+    private void doOptiForgeSetup(String mcVersion, File jsonFile) throws IOException, ParseException {
         /* Install optifine */
         doOptifineSetup(mcVersion, jsonFile);
 
@@ -323,7 +463,7 @@ public class Launcher {
         return modRefArray;
     }
 
-    private void doForgeSetup(String mcLowercase, File jsonFile) throws IOException, ParseException, InterruptedException {
+    private void doForgeSetup(String mcLowercase, File jsonFile) throws IOException, ParseException {
         /* Fetch forge versions */
         String forgeVersionList = Utils.makeGetRequest(new URL(Main.getForgeVersionsURL()));
         log.info("Fetching available forge versions");
@@ -357,11 +497,9 @@ public class Launcher {
         URL forgeInstallerUrl = new URL(String.format("%s%s/forge-%s-installer.jar", Main.getForgeInstallerURL(), forgeInstallerVersion, forgeInstallerVersion));
         File forgeInstallerFile = new File(String.format("%s/forge-%s-installer.jar", System.getProperty("java.io.tmpdir"), forgeInstallerVersion));
 
-        /* Download latest forge for the selected minecraft version*/
-        if (!forgeInstallerFile.exists()) {
-            ParallelTasks tasks = new ParallelTasks();
-            tasks.add(new DownloadFileTask(forgeInstallerUrl, forgeInstallerFile.getPath()));
-            tasks.go();
+        /* Download latest forge for the selected minecraft version, a cached installer is reused only if it's a complete jar */
+        if (!Utils.isValidZip(forgeInstallerFile)) {
+            download(new DownloadFileTask(forgeInstallerUrl, forgeInstallerFile.getPath()));
         }
         doForgeUnpack(forgeInstallerFile, jsonFile, forgeInstallerVersion);
     }
@@ -443,9 +581,8 @@ public class Launcher {
             if (entry.getName().contains(".jar")) {
                 File libFolder = makeDirectory(String.format("%s/libraries", gameFolder.getPath()));
 
-                String[] namesplit = forgeTargetPath.split(":");
-                File libpath = makeDirectory(String.format("%s/%s/%s/%s/", libFolder.getPath(), namesplit[0].replace(".", "/"), namesplit[1], namesplit[2]));
-                File libfile = new File(String.format("%s/%s-%s.jar", libpath.getPath(), namesplit[1], namesplit[2]));
+                File libfile = new File(libFolder, MavenCoordinate.parse(forgeTargetPath).getPath());
+                makeDirectory(libfile.getParent());
 
                 if (libfile.createNewFile())
                     try (InputStream inputStream = zipFile.getInputStream(entry); OutputStream outputStream = new FileOutputStream(libfile)) {
@@ -459,7 +596,7 @@ public class Launcher {
         }
     }
 
-    private void doOptifineSetup(String mcVersion, File jsonFile) throws IOException, ParseException, InterruptedException {
+    private void doOptifineSetup(String mcVersion, File jsonFile) throws IOException, ParseException {
         /* Fetch optifine versions */
         String ofVersionList = Utils.makeGetRequest(new URL(Main.getOptifineVersionsURL()));
 
@@ -478,11 +615,9 @@ public class Launcher {
                 URL ofInstallerURL = new URL(String.format("%s/downloads/extra-optifine/%s.jar", Main.getMorpheusAPI(), versionList.get("name")));
                 File ofInstallerFile = new File(String.format("%s/%s.jar", System.getProperty("java.io.tmpdir"), versionList.get("name")));
 
-                /* Download optifine installer into temp folder */
-                if (!ofInstallerFile.exists()) {
-                    ParallelTasks tasks = new ParallelTasks();
-                    tasks.add(new DownloadFileTask(ofInstallerURL, ofInstallerFile.getPath()));
-                    tasks.go();
+                /* Download optifine installer into temp folder, a cached installer is reused only if it's a complete jar */
+                if (!Utils.isValidZip(ofInstallerFile)) {
+                    download(new DownloadFileTask(ofInstallerURL, ofInstallerFile.getPath()));
                 }
 
                 ZipFile ofInstallerZip = new ZipFile(ofInstallerFile);
@@ -520,15 +655,13 @@ public class Launcher {
                 }
 
                 /* Download the vanilla json if absent */
-                MojangProduct.Version ver = findVersion(vanilla, mcVer);
+                MojangProduct.Version ver = versions.find(mcVer);
                 File vanillaJsonPath = new File(String.format("%s/versions/%s", gameFolder, ver.id));
                 if (!vanillaJsonPath.exists()) vanillaJsonPath.mkdirs();
 
                 File vanillaJsonFile = new File(String.format("%s/%s.json", vanillaJsonPath, ver.id));
                 if (!vanillaJsonFile.exists()) {
-                    ParallelTasks tasks = new ParallelTasks();
-                    tasks.add(new DownloadFileTask(new URL(ver.url), vanillaJsonFile.getPath()));
-                    tasks.go();
+                    download(new DownloadFileTask(new URL(ver.url), vanillaJsonFile.getPath()));
                 }
 
                 JSONParser jp = new JSONParser();
@@ -584,27 +717,10 @@ public class Launcher {
         log.info("Enabled classpath compatibility mode, this is needed by modloaders to work");
     }
 
-    /* Retrieve versions list from mojang server */
-    private MojangProduct retrieveVersions() throws IOException {
-        return new Gson().fromJson(Utils.makeGetRequest(new URL(Main.getVersionsURL())), MojangProduct.class);
-    }
-
-    /* Retrieve the version json */
-    private MojangProduct.Game retrieveGame(File file) throws IOException {
-        return new Gson().fromJson(new String(Files.readAllBytes(file.toPath())), MojangProduct.Game.class);
-    }
-
-    /* Search a version by "name" from the version list */
-    private MojangProduct.Version findVersion(MojangProduct data, String name) {
-        for (Object version : data.versions.stream().filter(f -> f.id.equalsIgnoreCase(name)).toArray()) {
-            return (MojangProduct.Version) version;
-        }
-        return null;
-    }
-
-    private void doClassloading(List<URL> jars, List<String> gameargs, String mainClass) throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException, InvocationTargetException {
-        /* Add all url paths to classloader */
-        URLClassLoader ucl = new URLClassLoader(jars.toArray(new URL[jars.size()]));
+    private void doClassloading(List<URL> jars, List<String> gameargs, String mainClass, File indexFile) throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+        /* Add all url paths to classloader, indexed by package unless -Dmorpheus.classloader=url asks for the plain one */
+        URL[] urls = jars.toArray(new URL[jars.size()]);
+        URLClassLoader ucl = "url".equalsIgnoreCase(System.getProperty("morpheus.classloader")) ? new URLClassLoader(urls) : new IndexedClassLoader(urls, indexFile);
         Thread.currentThread().setContextClassLoader(ucl); // idk but maybe can helpful
         Class<?> c = ucl.loadClass(mainClass);
 
@@ -631,6 +747,8 @@ public class Launcher {
     /* in newer minecraft versions mojang changed how launch arguments are specified in JSON
      * This automatically choose how arguments should be managed */
     private String[] argbuilder(MojangProduct.Game game) {
+        /* a level of an inheritsFrom chain may only bring libraries */
+        if (game.minecraftArguments == null && (game.arguments == null || game.arguments.game == null)) return new String[0];
         if (game.minecraftArguments != null) {
             // New
             return game.minecraftArguments.split(" ");
@@ -645,11 +763,21 @@ public class Launcher {
         }
     }
 
-    /* This method picks libraries and put into a URL list */
-    private List<URL> setupLibraries(MojangProduct.Game game) throws IOException, NoSuchAlgorithmException, InterruptedException {
-        List<URL> paths = new ArrayList<>();
-        for (MojangProduct.Game.Library lib : game.libraries) {
-            File libFolder = new File(String.format("%s/libraries", gameFolder.getPath()));
+    /* This method picks libraries and put them into a classpath model, modloader marks the libraries of a modloader json */
+    private ClasspathModel setupLibraries(List<MojangProduct.Game.Library> gameLibraries, boolean modloader) throws IOException {
+        /* The plan comes first: every allowed jar, with its path and hash, in classpath order.
+         * Then all of them are resolved at once, a download doesn't wait for the previous one anymore */
+        List<LibraryArtifact> plan = new ArrayList<>();
+        Set<String> planned = new HashSet<>();
+        for (MojangProduct.Game.Library lib : gameLibraries) {
+            /* an odd name doesn't stop the launch, the library just can't be merged by its coordinates */
+            MavenCoordinate coordinate = null;
+            try {
+                coordinate = MavenCoordinate.parse(lib.name);
+            } catch (IllegalArgumentException e) {
+                log.warn(String.format("%s, the library is taken as it is", e.getMessage()));
+            }
+
             /* Resolve libraries from json links */
             if (lib.downloads != null && lib.downloads.artifact != null) {
                 MojangProduct.Game.Artifact artifact = lib.downloads.artifact;
@@ -659,52 +787,42 @@ public class Launcher {
                 if (lib.rules != null) allow = checkRule(lib.rules);
                 if (!allow) continue;
 
-                if (artifact.path != null && !artifact.path.isEmpty()) {
-                    /* Jar library local file path */
-                    File file = new File(String.format("%s/%s", libFolder.getPath(), artifact.path));
-
-                    /* if the library jar doesn't exist or its hash is invalidated, download from mojang repo */
-                    if (artifact.url != null && !artifact.url.isEmpty() && (!file.exists() || file.exists() && !artifact.sha1.equals(CryptoEngine.fileHash(file, "SHA-1")))) {
-                        file.mkdirs();
-                        ParallelTasks tasks = new ParallelTasks();
-                        tasks.add(new DownloadFileTask(new URL(artifact.url), file.getPath()));
-                        tasks.go();
-                    }
-
-                    /* Append the library path to local list if not present */
-                    if (!paths.contains(file.toURI().toURL()) && paths.add(file.toURI().toURL())) {
-                        log.info(String.format("Loading: %s", file.toURI().toURL()));
-                    }
+                /* the library jar is downloaded from mojang repo only if it doesn't exist or its hash is invalidated,
+                 * an empty path means an artifact installed locally (e.g. by the forge installer) at its maven path */
+                String path = artifact.path != null && !artifact.path.isEmpty() ? artifact.path : coordinate != null ? coordinate.getPath() : null;
+                if (path == null) {
+                    log.warn(String.format("Skipping library %s, it has neither a path nor a valid name", lib.name));
+                    continue;
                 }
+                if (planned.add(path)) plan.add(new LibraryArtifact(coordinate, path, artifact.url, artifact.sha1, artifact.size, null));
+                continue;
             }
 
-            /* Reconstructs library path from name and eventually download it, this is used by old json formats and is even used by modloaders */
-            String[] namesplit = lib.name.split(":");
-            String libpath = String.format("%s/%s/%s/%s-%s.jar", namesplit[0].replace(".", "/"), namesplit[1], namesplit[2], namesplit[1], namesplit[2]);
-            File libfile = new File(String.format("%s/%s", libFolder.getPath(), libpath));
-
-            /* when url is provided in json, the specified source will used to download library, instead if not, will used mojang url */
-            String liburl = (lib.url != null ? lib.url : Main.getLibrariesURL());
-            URL downloadsource = new URL(String.format("%s/%s", liburl, libpath));
+            /* natives only libraries (lwjgl 2 era) have no jar of their own, setupNatives takes care of them */
+            if (lib.downloads != null && lib.downloads.classifiers != null) continue;
 
-            /* check if library isn't present on disk and check if needed library actually is available from download source */
-            try {
-                int response = ((HttpURLConnection) downloadsource.openConnection()).getResponseCode();
-                if (!libfile.exists() && response == 200) {
-                    libfile.mkdirs();
-                    ParallelTasks tasks = new ParallelTasks();
-                    tasks.add(new DownloadFileTask(downloadsource, libfile.getPath()));
-                    tasks.go();
-                }
-            } catch (Exception e) {
+            /* Reconstructs library path from name, this is used by old json formats and is even used by modloaders
+             * these come from the maven repo of the json or mojang one */
+            if (coordinate == null) {
+                log.warn(String.format("Skipping library %s, its path can't be made from the name", lib.name));
+                continue;
             }
+            String path = coordinate.getPath();
+            if (planned.add(path)) plan.add(new LibraryArtifact(coordinate, path, null, null, -1, lib.url != null ? lib.url : Main.getLibrariesURL()));
+        }
 
-            /* Append the library path to local list if not present */
-            if (!paths.contains(libfile.toURI().toURL()) && paths.add(libfile.toURI().toURL())) {
-                log.info(String.format("Loading: %s", libfile.toURI().toURL()));
-            }
+        ClasspathModel classpath = new ClasspathModel();
+        List<File> files = libraries.resolveAll(plan);
+        for (int i = 0; i < plan.size(); i++) classpath.add(plan.get(i).getCoordinate(), files.get(i), modloader);
+        return classpath;
+    }
+
+    private void loadLibraries(List<URL> paths, List<File> classpath) throws MalformedURLException {
+        for (File library : classpath) {
+            URL url = library.toURI().toURL();
+            paths.add(url);
+            log.info(String.format("Loading: %s", url));
         }
-        return paths;
     }
 
     /* this determine which library should be used, some minecraft versions need to use
@@ -722,13 +840,18 @@ public class Launcher {
         return defaultValue;
     }
 
-    private void setupNatives(MojangProduct.Game game, File nativesFolder) throws MalformedURLException {
+    private void setupNatives(MojangProduct.Game game, File nativesFolder) throws IOException {
+        /* Archives are only collected here, they are fetched and extracted at the end if anything changed,
+         * the binaries are shared with every other version through .minecraft/cache/natives */
+        NativesInstaller natives = new NativesInstaller(nativesFolder, new File(String.format("%s/cache/natives", gameFolder.getPath())), libraries, verifier);
+
         /* Find out what cpu architecture is the user machine, assuming they use baremetal os installation */
         String os_arch = OSUtils.getOSArch();
         boolean isArmProcessor = (os_arch.contains("arm") || os_arch.contains("aarch"));
         boolean isRiscVProcessor = os_arch.contains("riscv64");
 
         for (MojangProduct.Game.Library lib : game.libraries) {
+            List<String> exclude = lib.extract != null ? lib.extract.exclude : null;
             MojangProduct.Game.Classifiers classifiers = lib.downloads.classifiers;
             if (classifiers != null) {
                 /* Natives pojo model for windows */
@@ -742,33 +865,33 @@ public class Launcher {
                     /* These seems "duplicated" but is needed for maintaing compatibility with old versions like 1.8.x */
                     case windows:
                         if (windows32 != null) {
-                            Utils.downloadAndUnzipNatives(new URL(windows32.url), nativesFolder, log);
-                            log.info(String.format("Downloaded and extracted %s for %s", windows32.url, OSUtils.getPlatform()));
+                            natives.add(windows32.path, windows32.url, windows32.sha1, windows32.size, exclude);
+                            log.info(String.format("Using natives %s for %s", windows32.url, OSUtils.getPlatform()));
                         }
                         if (windows64 != null) {
-                            Utils.downloadAndUnzipNatives(new URL(windows64.url), nativesFolder, log);
-                            log.info(String.format("Downloaded and extracted %s for %s", windows64.url, OSUtils.getPlatform()));
+                            natives.add(windows64.path, windows64.url, windows64.sha1, windows64.size, exclude);
+                            log.info(String.format("Using natives %s for %s", windows64.url, OSUtils.getPlatform()));
                         }
                         if (windows != null) {
-                            Utils.downloadAndUnzipNatives(new URL(windows.url), nativesFolder, log);
-                            log.info(String.format("Downloaded and extracted %s for %s", windows.url, OSUtils.getPlatform()));
+                            natives.add(windows.path, windows.url, windows.sha1, windows.size, exclude);
+                            log.info(String.format("Using natives %s for %s", windows.url, OSUtils.getPlatform()));
                         }
                         break;
                     case linux:
                         if (linux != null) {
-                            Utils.downloadAndUnzipNatives(new URL(linux.url), nativesFolder, log);
-                            log.info(String.format("Downloaded and extracted %s for %s", linux.url, OSUtils.getPlatform()));
+                            natives.add(linux.path, linux.url, linux.sha1, linux.size, exclude);
+                            log.info(String.format("Using natives %s for %s", linux.url, OSUtils.getPlatform()));
                         }
                         break;
                     /* Dear mojang why you use different natives names in your json?? */
                     case macos:
                         if (osx != null) {
-                            Utils.downloadAndUnzipNatives(new URL(osx.url), nativesFolder, log);
-                            log.info(String.format("Downloaded and extracted %s for %s", osx.url, OSUtils.getPlatform()));
+                            natives.add(osx.path, osx.url, osx.sha1, osx.size, exclude);
+                            log.info(String.format("Using natives %s for %s", osx.url, OSUtils.getPlatform()));
                         }
                         if (macos != null) {
-                            Utils.downloadAndUnzipNatives(new URL(macos.url), nativesFolder, log);
-                            log.info(String.format("Downloaded and extracted %s for %s", macos.url, OSUtils.getPlatform()));
+                            natives.add(macos.path, macos.url, macos.sha1, macos.size, exclude);
+                            log.info(String.format("Using natives %s for %s", macos.url, OSUtils.getPlatform()));
                         }
                         break;
                     /* Fallback error in case user have weird os like solaris or bsd */
@@ -791,8 +914,9 @@ public class Launcher {
                     if (!isArmNative && isArmProcessor) compatible = false; // natives x86 on ARM (cpu)
 
                     if (!compatible) continue;
-                    Utils.downloadAndUnzipNatives(new URL(nativeURL), nativesFolder, log);
-                    log.info(String.format("Downloaded and extracted %s for %s (%s)", nativeURL, OSUtils.getPlatform(), os_arch));
+                    MojangProduct.Game.Artifact artifact = lib.downloads.artifact;
+                    natives.add(artifact.path, nativeURL, artifact.sha1, artifact.size, exclude);
+                    log.info(String.format("Using natives %s for %s (%s)", nativeURL, OSUtils.getPlatform(), os_arch));
                 }
             }
         }
@@ -805,8 +929,8 @@ public class Launcher {
                     // LWJGL 2.X (up to 1.12.2)
                     if (lib.downloads.classifiers != null && lib.downloads.classifiers.natives_osx != null && lib.downloads.classifiers.natives_osx.url.contains("lwjgl-platform-2")) {
                         String zipUrl = String.format("%s/downloads/extra-natives/lwjgl-2-macos-aarch64.zip", Main.getMorpheusAPI());
-                        Utils.downloadAndUnzipNatives(new URL(zipUrl), nativesFolder, log);
-                        log.info(String.format("Downloaded and extracted %s for %s", zipUrl, OSUtils.getPlatform()));
+                        natives.add(null, zipUrl, null, -1, null);
+                        log.info(String.format("Using natives %s for %s", zipUrl, OSUtils.getPlatform()));
                     }
                     break;
                 case linux:
@@ -814,71 +938,107 @@ public class Launcher {
                         // LWJGL 2.X (up to 1.12.2)
                         if (lib.downloads.classifiers != null && lib.downloads.classifiers.natives_linux != null && lib.downloads.classifiers.natives_linux.url.contains("lwjgl-platform-2")) {
                             String zipUrl = String.format("%s/downloads/extra-natives/lwjgl-2-linux-aarch64.zip", Main.getMorpheusAPI());
-                            Utils.downloadAndUnzipNatives(new URL(zipUrl), nativesFolder, log);
-                            log.info(String.format("Downloaded and extracted %s for %s", zipUrl, OSUtils.getPlatform()));
+                            natives.add(null, zipUrl, null, -1, null);
+                            log.info(String.format("Using natives %s for %s", zipUrl, OSUtils.getPlatform()));
                         }
                         // LWJGL 3.3 (1.19+)
                         if (lib.name.contains("native") && lib.rules != null && checkRule(lib.rules) && lib.name.contains("lwjgl")) {
                             String zipUrl = String.format("%s/downloads/extra-natives/lwjgl-3.3-linux-aarch64.zip", Main.getMorpheusAPI());
-                            Utils.downloadAndUnzipNatives(new URL(zipUrl), nativesFolder, log);
-                            log.info(String.format("Downloaded and extracted %s for %s", zipUrl, OSUtils.getPlatform()));
+                            natives.add(null, zipUrl, null, -1, null);
+                            log.info(String.format("Using natives %s for %s", zipUrl, OSUtils.getPlatform()));
                         }
                     } else if (isRiscVProcessor) {
                         // LWJGL 2.X (up to 1.12.2)
                         if (lib.downloads.classifiers != null && lib.downloads.classifiers.natives_linux != null && lib.downloads.classifiers.natives_linux.url.contains("lwjgl-platform-2")) {
                             String zipUrl = String.format("%s/downloads/extra-natives/lwjgl-2-linux-riscv64.zip", Main.getMorpheusAPI());
-                            Utils.downloadAndUnzipNatives(new URL(zipUrl), nativesFolder, log);
-                            log.info(String.format("Downloaded and extracted %s for %s", zipUrl, OSUtils.getPlatform()));
+                            natives.add(null, zipUrl, null, -1, null);
+                            log.info(String.format("Using natives %s for %s", zipUrl, OSUtils.getPlatform()));
                         }
                     }
                     break;
             }
         }
+        natives.install();
     }
 
-    private void setupAssets(MojangProduct.Game game) throws IOException, ParseException, InterruptedException {
+    private void setupAssets(MojangProduct.Game game) throws IOException, NoSuchAlgorithmException {
         /* Download assets indexes from mojang repo */
         File indexesPath = new File(String.format("%s/indexes/%s.json", assetsFolder.getPath(), game.assetIndex.id));
         if (!indexesPath.exists()) {
-            indexesPath.mkdirs();
-            ParallelTasks tasks = new ParallelTasks();
-            tasks.add(new DownloadFileTask(new URL(game.assetIndex.url), indexesPath.getPath()));
-            tasks.go();
+            indexesPath.getParentFile().mkdirs();
+            download(new DownloadFileTask(new URL(game.assetIndex.url), indexesPath.getPath(), game.assetIndex.size > 0 ? game.assetIndex.size : -1, game.assetIndex.sha1, verifier));
             log.info(indexesPath.getPath() + " was created");
         }
 
-        /* Fetch all the entries and read properties */
-        JSONObject json_objects = (JSONObject) ((JSONObject) jsonParser.parse(new FileReader(indexesPath))).get("objects");
-        json_objects.keySet().forEach(keyStr -> {
-            JSONObject json_entry = (JSONObject) json_objects.get(keyStr);
-            String size = json_entry.get("size").toString();
-            String hash = json_entry.get("hash").toString();
-
-            /* the asset parent folders is the first two chars of the asset hash
-             * "asset" is intended as the single resource file of the game */
-            String directory = hash.substring(0, 2);
-
-            try {
-                boolean isLegacy = game.assetIndex.id.contains("pre-1.6");
+        TaskScheduler scheduler = TaskScheduler.getDefault();
+        boolean isLegacy = game.assetIndex.id.contains("pre-1.6");
+        /* missing objects are queued on the io lane as soon as a chunk finds them, and awaited once at the end */
+        List<Future<File>> downloads = Collections.synchronizedList(new ArrayList<>());
+        /* legacy resources to be materialized from the objects store once the downloads are done */
+        List<File[]> resources = Collections.synchronizedList(new ArrayList<>());
+        /* indexes list the same hash under many names, each object is checked and queued once across all chunks:
+         * two downloads of one object would race on the same .part file */
+        Set<String> objects = ConcurrentHashMap.newKeySet();
+
+        /* Fetch all the entries, the compact index is cached next to the json */
+        AssetIndex index = AssetIndexReader.load(indexesPath);
+
+        /* Verification is split in chunks on the cpu lane, a cold check hashes every object */
+        int chunks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), index.size() / 256));
+        List<Future<Void>> checks = new ArrayList<>();
+        for (int c = 0; c < chunks; c++) {
+            int from = c * index.size() / chunks, to = (c + 1) * index.size() / chunks;
+            checks.add(scheduler.cpu(() -> {
+                for (int i = from; i < to; i++) {
+                    String hash = index.getHash(i);
+
+                    /* the asset parent folders is the first two chars of the asset hash
+                     * "asset" is intended as the single resource file of the game */
+                    String directory = hash.substring(0, 2);
+
+                    /* every asset lives once in the content addressed objects store */
+                    File objectsPath = new File(String.format("%s/objects/%s/%s", assetsFolder.getPath(), directory, hash));
+
+                    /* legacy versions read from .minecraft/resources, the file there is taken from the store */
+                    boolean needsObject = true;
+                    if (isLegacy) {
+                        File resourcePath = new File(String.format("%s/resources/%s", gameFolder.getPath(), index.getName(i)));
+                        if (verifier.verify(resourcePath, hash)) needsObject = false;
+                        else resources.add(new File[]{objectsPath, resourcePath});
+                    }
 
-                /* legacy versions use .minecraft/resources instead of .minecraft/assets */
-                File objectsPath;
-                if (isLegacy) objectsPath = new File(String.format("%s/resources/%s", gameFolder.getPath(), keyStr));
-                else objectsPath = new File(String.format("%s/objects/%s/%s", assetsFolder.getPath(), directory, hash));
+                    /* if asset doesn't exist or its hash is invalid, queue the re-download from mojang */
+                    if (needsObject && objects.add(hash) && !verifier.verify(objectsPath, hash)) {
+                        objectsPath.getParentFile().mkdirs();
+                        URL object_url = new URL(String.format("%s/%s/%s", Main.getAssetsURL(), directory, hash));
+                        downloads.add(scheduler.io(new DownloadFileTask(object_url, objectsPath.getPath(), index.getSize(i), hash, verifier)));
+                    }
+                }
+                return null;
+            }));
+        }
+        TaskScheduler.awaitAll(checks);
 
-                /* if asset doesn't exist or its hash is invalid, re-download from mojang */
-                if (!objectsPath.exists() || objectsPath.exists() && !hash.equals(CryptoEngine.fileHash(objectsPath, "SHA-1"))) {
-                    objectsPath.mkdirs();
-                    URL object_url = new URL(String.format("%s/%s/%s", Main.getAssetsURL(), directory, hash));
+        if (!downloads.isEmpty()) {
+            long start = System.currentTimeMillis();
+            log.info(String.format("Downloading %s missing assets (up to %s at once)", downloads.size(), variables.getDownloadThreads()));
+            TaskScheduler.awaitAll(downloads);
+            log.info(String.format("Assets synchronized in %sms", System.currentTimeMillis() - start));
+        }
 
-                    ParallelTasks tasks = new ParallelTasks();
-                    tasks.add(new DownloadFileTask(object_url, objectsPath.getPath()));
-                    tasks.go();
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
+        if (!resources.isEmpty()) {
+            int linked = 0, copied = 0;
+            for (File[] resource : resources) {
+                if (Utils.linkOrCopy(resource[0], resource[1])) linked++;
+                else copied++;
             }
-        });
+            log.info(String.format("Legacy resources: %s linked, %s copied from the objects store", linked, copied));
+        }
+    }
+
+    /* Runs a single download on the io lane and waits for it, failures are rethrown here */
+    private void download(DownloadFileTask task) throws IOException {
+        TaskScheduler.await(TaskScheduler.getDefault().io(task));
     }
 
     private File makeDirectory(String path) {
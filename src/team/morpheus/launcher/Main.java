@@ -14,6 +14,8 @@ public class Main {
 
     public static final String build = "(v2.2.1 | 05_11_2024)";
     private static final MyLogger log = new MyLogger(Main.class);
+    /* more parallel connections than this only get the launcher throttled by the servers */
+    private static final int MAX_DOWNLOAD_THREADS = 64;
 
     @Getter
     private static Vanilla vanilla;
@@ -31,12 +33,21 @@ public class Main {
         Option var7 = Option.builder("c").longOpt("forceClassPath").desc("Forces the use of classpath instead of classloader").build();
         Option var8 = Option.builder("f").longOpt("gameFolder").argName("path").hasArg().desc("Uses the user given path instead of .minecraft").build();
         Option var9 = Option.builder("x").longOpt("startOnFirstThread").desc("Starts the game on first thread (macos)").build();
+        Option var10 = Option.builder("d").longOpt("downloadThreads").argName("threads").hasArg().desc(String.format("Upper bound of concurrent downloads (1-%s), the actual number adapts to the connection (default: 16)", MAX_DOWNLOAD_THREADS)).build();
+        Option var11 = Option.builder("r").longOpt("verifyFiles").desc("Rehashes every game file ignoring the verification index").build();
+        Option var12 = Option.builder("a").longOpt("classArchive").desc("Records the classes loaded by the game in an AppCDS archive reused by the next launches (needs -c and java 13+)").build();
 
         Options options = new Options();
-        options.addOption(var2).addOption(var3).addOption(var4).addOption(var5).addOption(var7).addOption(var8).addOption(var9);
+        options.addOption(var2).addOption(var3).addOption(var4).addOption(var5).addOption(var7).addOption(var8).addOption(var9).addOption(var10).addOption(var11).addOption(var12);
         CommandLine cmd = (new DefaultParser()).parse(options, args);
 
         String gameFolder = cmd.hasOption(var8) ? cmd.getOptionValue(var8) : OSUtils.getWorkingDirectory("minecraft").getPath();
+        int downloadThreads = cmd.hasOption(var10) ? parseThreads(cmd.getOptionValue(var10)) : 16;
+        if (downloadThreads < 1) {
+            log.error(String.format("Invalid download threads \"%s\", it must be a number from 1 to %s", cmd.getOptionValue(var10), MAX_DOWNLOAD_THREADS));
+            printHelp(options);
+            return;
+        }
 
         if (cmd.getOptionValue(var3) != null && cmd.getOptionValue(var4) != null && cmd.getOptionValue(var5) != null) {
             /* Setup minecraft session */
@@ -44,7 +55,7 @@ public class Main {
 
             /* Select operative mode */
             if (cmd.getOptionValue(var2) != null) {
-                (vanilla = new Vanilla(cmd.getOptionValue(var2), cmd.hasOption(var7), cmd.hasOption(var9))).prepareLaunch(gameFolder);
+                (vanilla = new Vanilla(cmd.getOptionValue(var2), cmd.hasOption(var7), cmd.hasOption(var9), downloadThreads, cmd.hasOption(var11), cmd.hasOption(var12))).prepareLaunch(gameFolder);
             }
         } else {
             /* Print Help */
@@ -52,6 +63,16 @@ public class Main {
         }
     }
 
+    /* -1 when not a number or out of range */
+    private static int parseThreads(String value) {
+        try {
+            int threads = Integer.parseInt(value.trim());
+            return threads <= MAX_DOWNLOAD_THREADS ? threads : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     private static void printHelp(Options options) {
         System.out.println("Usage: java -Djava.library.path=<nativespath> -jar Launcher.jar [options]");
         System.out.println("\nAvailable options:");
@@ -11,11 +11,17 @@ public class Vanilla {
     private String mcVersion;
     private boolean useclasspath;
     private boolean startonfirstthread;
+    private int downloadthreads;
+    private boolean verifyfiles;
+    private boolean classarchive;
 
-    public Vanilla(String mcVersion, boolean useclasspath, boolean startonfirstthread) {
+    public Vanilla(String mcVersion, boolean useclasspath, boolean startonfirstthread, int downloadthreads, boolean verifyfiles, boolean classarchive) {
         this.mcVersion = mcVersion;
         this.useclasspath = useclasspath;
         this.startonfirstthread = startonfirstthread;
+        this.downloadthreads = downloadthreads;
+        this.verifyfiles = verifyfiles;
+        this.classarchive = classarchive;
     }
 
     public void prepareLaunch(String gamePath) throws Exception {
@@ -27,6 +33,6 @@ public class Vanilla {
                 || mcVersion.toLowerCase().contains("liteloader");
 
         log.info(String.format("Launching %s instance (%s)", !modded ? "Vanilla" : "Modded", mcVersion));
-        new Launcher(new LauncherVariables(mcVersion, modded, useclasspath, gamePath, startonfirstthread));
+        new Launcher(new LauncherVariables(mcVersion, modded, useclasspath, gamePath, startonfirstthread, downloadthreads, verifyfiles, classarchive));
     }
 }
@@ -0,0 +1,37 @@
+package team.morpheus.launcher.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import team.morpheus.launcher.utils.CryptoEngine;
+
+/* Compact view of assets/indexes/<id>.json, entry i is described by names[i],
+ * the 20 bytes of hashes starting at i * 20 and sizes[i] */
+@Getter
+@AllArgsConstructor
+public class AssetIndex {
+
+    public static final int HASH_LENGTH = 20;
+
+    private final String[] names;
+    private final byte[] hashes;
+    private final long[] sizes;
+    private final boolean virtual;
+    private final boolean mapToResources;
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int i) {
+        return names[i];
+    }
+
+    public long getSize(int i) {
+        return sizes[i];
+    }
+
+    /* Hex form of the entry hash, as used by the objects folder and the download url */
+    public String getHash(int i) {
+        return CryptoEngine.bytesToHex(hashes, i * HASH_LENGTH, HASH_LENGTH);
+    }
+}
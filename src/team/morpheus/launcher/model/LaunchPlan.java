@@ -0,0 +1,46 @@
+package team.morpheus.launcher.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.File;
+import java.util.List;
+
+/* Everything a launch resolved from the version jsons, saved as versions/<id>/launch.plan
+ * so a later launch whose inputs didn't change can go straight to the game */
+@Getter
+@AllArgsConstructor
+public class LaunchPlan {
+
+    /* launcher build, platform and options the plan was made with, another context means another plan */
+    private final String context;
+    private final String versionId;
+    /* the vanilla version, the same as versionId unless it's a modloader */
+    private final String baseVersion;
+    private final String mainClass;
+    /* vanilla arguments with the version placeholders already replaced, the session ones are left for the launch */
+    private final List<String> arguments;
+    /* modloader arguments, appended as they are */
+    private final List<String> extraArguments;
+    /* libraries in load order, the client jar goes after them */
+    private final List<File> classpath;
+    private final File clientJar;
+    /* modloaders need java.class.path to list the classpath */
+    private final boolean compatibility;
+    private final File nativesFolder;
+    private final File assetIndex;
+    /* every file the plan was derived from */
+    private final List<Input> inputs;
+
+    @Getter
+    @AllArgsConstructor
+    public static class Input {
+
+        private final File file;
+        private final long size;
+        private final long lastModified;
+        private final String sha1;
+        /* id in mojang versions list for the vanilla jsons, their hash is checked against it; null otherwise */
+        private final String versionId;
+    }
+}
@@ -12,4 +12,7 @@ public class LauncherVariables {
     private boolean classPath;
     private String gamePath;
     private boolean startOnFirstThread;
+    private int downloadThreads;
+    private boolean verifyFiles;
+    private boolean classArchive;
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package team.morpheus.launcher.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/* One entry of the library plan: where the jar goes and how it can be fetched and checked */
+@Getter
+@AllArgsConstructor
+public class LibraryArtifact {
+
+    /* parsed "name" of the json library */
+    private final MavenCoordinate coordinate;
+    /* relative to .minecraft/libraries */
+    private final String path;
+    /* direct download link from the json, null or empty when the jar is installed locally */
+    private final String url;
+    private final String sha1;
+    private final long size;
+    /* maven repository for libraries known only by name, checked against the .sha1 sidecar */
+    private final String repository;
+}
@@ -0,0 +1,88 @@
+package team.morpheus.launcher.model;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/* group:artifact:version[:classifier][@extension], as found in the "name" of the json libraries */
+@Getter
+public class MavenCoordinate {
+
+    private final String group;
+    private final String artifact;
+    private final String version;
+    /* null when absent */
+    private final String classifier;
+    private final String extension;
+
+    public MavenCoordinate(String group, String artifact, String version, String classifier, String extension) {
+        this.group = group;
+        this.artifact = artifact;
+        this.version = version;
+        this.classifier = classifier;
+        this.extension = extension;
+    }
+
+    public static MavenCoordinate parse(String name) {
+        if (name == null) throw new IllegalArgumentException("Missing maven coordinate");
+        String extension = "jar";
+        int at = name.lastIndexOf('@');
+        if (at >= 0) {
+            extension = name.substring(at + 1);
+            name = name.substring(0, at);
+        }
+        String[] parts = name.split(":");
+        if (parts.length < 3 || parts.length > 4) throw new IllegalArgumentException(String.format("Invalid maven coordinate: %s", name));
+        return new MavenCoordinate(parts[0], parts[1], parts[2], parts.length == 4 ? parts[3] : null, extension);
+    }
+
+    /* Repository layout path, e.g. org/lwjgl/lwjgl/3.3.1/lwjgl-3.3.1-natives-linux.jar */
+    public String getPath() {
+        return String.format("%s/%s/%s/%s-%s%s.%s", group.replace(".", "/"), artifact, version, artifact, version, classifier != null ? "-" + classifier : "", extension);
+    }
+
+    /* Identity of the library regardless of its version, two coordinates with the same key conflict on the classpath */
+    public String getKey() {
+        return String.format("%s:%s:%s@%s", group, artifact, classifier != null ? classifier : "", extension);
+    }
+
+    public boolean isNewerThan(MavenCoordinate other) {
+        return compareVersions(version, other.version) > 0;
+    }
+
+    /* Maven-like ordering: numbers compare as numbers, missing ones count as 0 (1.0 = 1.0.0),
+     * a qualifier sorts before the release (1.0-beta < 1.0 < 1.0.1) */
+    public static int compareVersions(String a, String b) {
+        List<Object> left = tokenize(a), right = tokenize(b);
+        for (int i = 0; i < Math.max(left.size(), right.size()); i++) {
+            Object l = i < left.size() ? left.get(i) : null, r = i < right.size() ? right.get(i) : null;
+            if (l == null && r instanceof Long) l = 0L;
+            if (r == null && l instanceof Long) r = 0L;
+            if (l == null) return 1;
+            if (r == null) return -1;
+            int result;
+            if (l instanceof Long && r instanceof Long) result = Long.compare((Long) l, (Long) r);
+            else if (l instanceof Long) result = 1;
+            else if (r instanceof Long) result = -1;
+            else result = ((String) l).compareToIgnoreCase((String) r);
+            if (result != 0) return result;
+        }
+        return 0;
+    }
+
+    private static List<Object> tokenize(String version) {
+        List<Object> tokens = new ArrayList<>();
+        for (String token : version.split("[.\\-_+]|(?<=\\d)(?=\\D)|(?<=\\D)(?=\\d)")) {
+            if (token.isEmpty()) continue;
+            if (token.chars().allMatch(Character::isDigit) && token.length() < 19) tokens.add(Long.parseLong(token));
+            else tokens.add(token);
+        }
+        return tokens;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s:%s:%s%s%s", group, artifact, version, classifier != null ? ":" + classifier : "", extension.equals("jar") ? "" : "@" + extension);
+    }
+}
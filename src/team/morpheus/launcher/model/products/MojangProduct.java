@@ -3,7 +3,6 @@ package team.morpheus.launcher.model.products;
 import com.google.gson.annotations.SerializedName;
 
 import java.util.ArrayList;
-import java.util.Date;
 
 public class MojangProduct {
 
@@ -34,10 +33,10 @@ public class MojangProduct {
         public String url;
 
         @SerializedName("time")
-        public Date time;
+        public String time;
 
         @SerializedName("releaseTime")
-        public Date releaseTime;
+        public String releaseTime;
     }
 
     public class Game {
@@ -73,10 +72,10 @@ public class MojangProduct {
         public int minimumLauncherVersion;
 
         @SerializedName("releaseTime")
-        public Date releaseTime;
+        public String releaseTime;
 
         @SerializedName("time")
-        public Date time;
+        public String time;
 
         @SerializedName("type")
         public String type;
@@ -200,10 +199,19 @@ public class MojangProduct {
             @SerializedName("natives")
             public Natives natives;
 
+            @SerializedName("extract")
+            public Extract extract;
+
             @SerializedName("url")
             public String url;
         }
 
+        public class Extract {
+
+            @SerializedName("exclude")
+            public ArrayList<String> exclude;
+        }
+
         public class Rule {
 
             @SerializedName("action")
@@ -0,0 +1,129 @@
+package team.morpheus.launcher.utils;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import team.morpheus.launcher.logging.MyLogger;
+import team.morpheus.launcher.model.AssetIndex;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/* Reads asset indexes with a streaming parser into a primitive backed AssetIndex,
+ * the result is cached in a binary sidecar (<id>.bin) so the json is parsed only once per index id */
+public class AssetIndexReader {
+
+    private static final MyLogger log = new MyLogger(AssetIndexReader.class);
+    private static final int MAGIC = 0x4D414931; // "MAI1"
+
+    public static AssetIndex load(File json) throws IOException {
+        File sidecar = new File(json.getPath().replaceAll("\\.json$", "") + ".bin");
+        AssetIndex index = readSidecar(sidecar, json);
+        if (index != null) return index;
+
+        index = parse(json);
+        writeSidecar(sidecar, json, index);
+        return index;
+    }
+
+    public static AssetIndex parse(File json) throws IOException {
+        int count = 0;
+        String[] names = new String[4096];
+        byte[] hashes = new byte[names.length * AssetIndex.HASH_LENGTH];
+        long[] sizes = new long[names.length];
+        boolean virtual = false, mapToResources = false;
+
+        try (JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(new FileInputStream(json), StandardCharsets.UTF_8), 65536))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "virtual":
+                        virtual = reader.nextBoolean();
+                        break;
+                    case "map_to_resources":
+                        mapToResources = reader.nextBoolean();
+                        break;
+                    case "objects":
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            if (count == names.length) {
+                                names = Arrays.copyOf(names, count * 2);
+                                hashes = Arrays.copyOf(hashes, count * 2 * AssetIndex.HASH_LENGTH);
+                                sizes = Arrays.copyOf(sizes, count * 2);
+                            }
+                            names[count] = reader.nextName();
+                            reader.beginObject();
+                            while (reader.hasNext()) {
+                                String field = reader.nextName();
+                                if (field.equals("hash")) {
+                                    decodeHex(reader.nextString(), hashes, count * AssetIndex.HASH_LENGTH);
+                                } else if (field.equals("size") && reader.peek() == JsonToken.NUMBER) {
+                                    sizes[count] = reader.nextLong();
+                                } else {
+                                    reader.skipValue();
+                                }
+                            }
+                            reader.endObject();
+                            count++;
+                        }
+                        reader.endObject();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return new AssetIndex(Arrays.copyOf(names, count), Arrays.copyOf(hashes, count * AssetIndex.HASH_LENGTH), Arrays.copyOf(sizes, count), virtual, mapToResources);
+    }
+
+    private static AssetIndex readSidecar(File sidecar, File json) {
+        if (!sidecar.isFile()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar), 65536))) {
+            /* the sidecar is only valid for the exact json it was built from */
+            if (in.readInt() != MAGIC || in.readLong() != json.length() || in.readLong() != json.lastModified()) return null;
+            boolean virtual = in.readBoolean(), mapToResources = in.readBoolean();
+            int count = in.readInt();
+            String[] names = new String[count];
+            byte[] hashes = new byte[count * AssetIndex.HASH_LENGTH];
+            long[] sizes = new long[count];
+            for (int i = 0; i < count; i++) names[i] = in.readUTF();
+            in.readFully(hashes);
+            for (int i = 0; i < count; i++) sizes[i] = in.readLong();
+            return new AssetIndex(names, hashes, sizes, virtual, mapToResources);
+        } catch (IOException e) {
+            log.warn(String.format("Discarding asset index cache %s: %s", sidecar.getName(), e.getMessage()));
+            return null;
+        }
+    }
+
+    private static void writeSidecar(File sidecar, File json, AssetIndex index) {
+        File temp = new File(sidecar.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536))) {
+                out.writeInt(MAGIC);
+                out.writeLong(json.length());
+                out.writeLong(json.lastModified());
+                out.writeBoolean(index.isVirtual());
+                out.writeBoolean(index.isMapToResources());
+                out.writeInt(index.size());
+                for (String name : index.getNames()) out.writeUTF(name);
+                out.write(index.getHashes());
+                for (long size : index.getSizes()) out.writeLong(size);
+            }
+            Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn(String.format("Cannot write asset index cache %s: %s", sidecar.getName(), e.getMessage()));
+            temp.delete();
+        }
+    }
+
+    private static void decodeHex(String hex, byte[] target, int offset) throws IOException {
+        if (hex.length() != AssetIndex.HASH_LENGTH * 2) throw new IOException(String.format("Invalid asset hash: %s", hex));
+        for (int i = 0; i < AssetIndex.HASH_LENGTH; i++) {
+            target[offset + i] = (byte) ((Character.digit(hex.charAt(i * 2), 16) << 4) | Character.digit(hex.charAt(i * 2 + 1), 16));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package team.morpheus.launcher.utils;
+
+import team.morpheus.launcher.logging.MyLogger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/* AppCDS archive of the classes a version loads, for the launches through -c (java 13+ only).
+ * The first launch records what the game loaded with -XX:ArchiveClassesAtExit, the next ones map it with
+ * -XX:SharedArchiveFile so the classes aren't parsed and verified again. The archive is named by a hash of
+ * java version and classpath (with sizes and dates of the jars), anything changed means a new recording */
+public class ClassArchive {
+
+    private static final MyLogger log = new MyLogger(ClassArchive.class);
+    private static final Pattern VERSION = Pattern.compile("version \"([^\"]+)\"");
+
+    private final File folder;
+    private final File javaCache;
+    private final String java;
+    private File recording, archive;
+
+    /* folder holds the archives of one version, javaCache the versions of the java executables already asked */
+    public ClassArchive(File folder, File javaCache, String java) {
+        this.folder = folder;
+        this.javaCache = javaCache;
+        this.java = java;
+    }
+
+    /* Options for the game jvm, empty when the java running it can't do dynamic archives */
+    public List<String> options(String classPath) {
+        try {
+            String version = javaVersion();
+            if (version == null || majorVersion(version) < 13) {
+                log.warn(String.format("AppCDS needs java 13 or newer, %s is %s: launching without it", java, version));
+                return Collections.emptyList();
+            }
+
+            String key = key(version, classPath);
+            archive = new File(folder, key + ".jsa");
+            if (archive.isFile()) {
+                log.info(String.format("Using class archive %s", archive.getName()));
+                /* auto: a refused archive (e.g. a jdk updated in place) just means a launch without it */
+                return Arrays.asList("-XX:SharedArchiveFile=" + archive.getPath(), "-Xshare:auto");
+            }
+
+            /* older recordings are stale, the classpath they were made for is gone */
+            folder.mkdirs();
+            File[] stale = folder.listFiles((dir, name) -> name.endsWith(".jsa") || name.endsWith(".jsa.tmp"));
+            if (stale != null) for (File file : stale) Files.deleteIfExists(file.toPath());
+
+            /* recorded under a temporary name, a game that crashed or was killed can't leave half an archive.
+             * The dump warns for every class it skips (signed jars, old bytecode), nothing the user can act on */
+            recording = new File(folder, key + ".jsa.tmp");
+            log.info(String.format("Recording class archive %s, it will be used from the next launch", archive.getName()));
+            return Arrays.asList("-XX:ArchiveClassesAtExit=" + recording.getPath(), "-Xlog:cds*=error");
+        } catch (IOException e) {
+            log.warn(String.format("Cannot prepare class archive: %s", RetryPolicy.describe(e)));
+            return Collections.emptyList();
+        }
+    }
+
+    /* Called once the game exited, keeps the recording only when the game closed cleanly */
+    public void finish(int exitCode) {
+        if (recording == null) return;
+        try {
+            if (exitCode == 0 && recording.isFile() && recording.length() > 0) {
+                Files.move(recording.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                log.info(String.format("Class archive %s recorded (%s KB)", archive.getName(), archive.length() / 1024));
+            } else {
+                Files.deleteIfExists(recording.toPath());
+                log.warn(String.format("Game exited with %s, class archive discarded", exitCode));
+            }
+        } catch (IOException e) {
+            log.warn(String.format("Cannot keep class archive: %s", RetryPolicy.describe(e)));
+        }
+    }
+
+    private String key(String version, String classPath) throws IOException {
+        StringBuilder data = new StringBuilder(version);
+        for (String path : classPath.split(Pattern.quote(File.pathSeparator))) {
+            File file = new File(path);
+            data.append('\n').append(path).append('|').append(file.length()).append('|').append(file.lastModified());
+        }
+        try {
+            return CryptoEngine.hash256(data.toString()).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /* Version string of the java executable, asked once per executable and cached by its size and date */
+    private String javaVersion() throws IOException {
+        File executable = resolve(java);
+        String cacheKey = executable != null ? String.format("%s|%s|%s", executable.getCanonicalPath(), executable.length(), executable.lastModified()) : null;
+
+        Properties cache = new Properties();
+        if (javaCache.isFile()) {
+            try (InputStream in = new FileInputStream(javaCache)) {
+                cache.load(in);
+            }
+        }
+        if (cacheKey != null && cache.getProperty(cacheKey) != null) return cache.getProperty(cacheKey);
+
+        Process process = new ProcessBuilder(java, "-version").redirectErrorStream(true).start();
+        String version = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = VERSION.matcher(line);
+                if (version == null && matcher.find()) version = matcher.group(1);
+            }
+        }
+        if (version != null && cacheKey != null) {
+            cache.setProperty(cacheKey, version);
+            javaCache.getParentFile().mkdirs();
+            try (OutputStream out = new FileOutputStream(javaCache)) {
+                cache.store(out, null);
+            }
+        }
+        return version;
+    }
+
+    /* "1.8.0_392" is 8, "17.0.9" is 17 */
+    private static int majorVersion(String version) {
+        String[] parts = version.split("[._\\-+]");
+        try {
+            return parts[0].equals("1") && parts.length > 1 ? Integer.parseInt(parts[1]) : Integer.parseInt(parts[0]);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /* The file a command name stands for, looked up in PATH like the os would */
+    private static File resolve(String command) {
+        File file = new File(command);
+        if (file.isAbsolute()) return file.isFile() ? file : null;
+        String path = System.getenv("PATH");
+        if (path == null) return null;
+        for (String directory : path.split(Pattern.quote(File.pathSeparator))) {
+            for (String name : new String[]{command, command + ".exe"}) {
+                File candidate = new File(directory, name);
+                if (candidate.isFile() && candidate.canExecute()) return candidate;
+            }
+        }
+        return null;
+    }
+}
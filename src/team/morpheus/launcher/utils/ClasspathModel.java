@@ -0,0 +1,61 @@
+package team.morpheus.launcher.utils;
+
+import lombok.AllArgsConstructor;
+import team.morpheus.launcher.logging.MyLogger;
+import team.morpheus.launcher.model.MavenCoordinate;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Libraries of a launch keyed by their maven coordinates without the version, so two versions
+ * of the same artifact can't both end up on the classpath. On a conflict the modloader library wins
+ * over the vanilla one, between libraries of the same side the newest wins.
+ * The order is the one of first appearance, a replaced library keeps the slot of the one it replaced */
+public class ClasspathModel {
+
+    private static final MyLogger log = new MyLogger(ClasspathModel.class);
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    public void add(MavenCoordinate coordinate, File file, boolean modloader) {
+        /* a library without coordinates is only deduped by its file */
+        String key = coordinate != null ? coordinate.getKey() : file.getAbsolutePath();
+        Entry entry = new Entry(coordinate, file, modloader);
+        Entry existing = entries.get(key);
+        if (existing == null) {
+            entries.put(key, entry);
+        } else if (!existing.file.equals(file) && wins(entry, existing)) {
+            log.info(String.format("Classpath conflict: %s replaces %s", coordinate, existing.coordinate));
+            entries.put(key, entry);
+        } else if (!existing.file.equals(file)) {
+            log.info(String.format("Classpath conflict: %s kept over %s", existing.coordinate, coordinate));
+        }
+    }
+
+    /* Appends the libraries of another model, e.g. the vanilla ones after the modloader ones */
+    public void merge(ClasspathModel other) {
+        for (Entry entry : other.entries.values()) add(entry.coordinate, entry.file, entry.modloader);
+    }
+
+    public List<File> getFiles() {
+        List<File> files = new ArrayList<>();
+        for (Entry entry : entries.values()) files.add(entry.file);
+        return files;
+    }
+
+    private static boolean wins(Entry candidate, Entry existing) {
+        if (candidate.modloader != existing.modloader) return candidate.modloader;
+        return candidate.coordinate != null && existing.coordinate != null && candidate.coordinate.isNewerThan(existing.coordinate);
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+
+        private final MavenCoordinate coordinate;
+        private final File file;
+        private final boolean modloader;
+    }
+}
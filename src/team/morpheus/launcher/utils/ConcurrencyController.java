@@ -0,0 +1,183 @@
+package team.morpheus.launcher.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import team.morpheus.launcher.logging.MyLogger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/* AIMD limiter for in-flight transfers, downloads are bound by the network and not by the cpu count.
+ * Every window the measured throughput decides: if it improved one more transfer is allowed (additive increase),
+ * errors, 429s and latency spikes halve the limit instead (multiplicative decrease) */
+public class ConcurrencyController {
+
+    private static final MyLogger log = new MyLogger(ConcurrencyController.class);
+    private static final long WINDOW = 250;
+    private static final double IMPROVEMENT = 1.05, LATENCY_SPIKE = 3.0;
+
+    private static volatile ConcurrencyController instance;
+
+    private final int min, max;
+    private final long created = System.currentTimeMillis();
+    @Getter
+    private int limit, peakLimit, lowestLimit;
+    private int inFlight;
+
+    /* current window */
+    private long windowStart = System.currentTimeMillis(), windowBytes, windowLatency;
+    private int windowCompleted, windowErrors;
+    private boolean windowThrottled, windowSaturated;
+
+    /* history */
+    private double lastThroughput, baselineLatency = -1;
+    private long totalBytes;
+    private int totalTransfers, totalErrors;
+    private final List<Sample> curve = new ArrayList<>();
+
+    public ConcurrencyController(int max) {
+        this.max = Math.max(1, max);
+        this.min = Math.min(2, this.max);
+        this.limit = this.peakLimit = this.lowestLimit = Math.min(8, this.max);
+    }
+
+    public static ConcurrencyController getDefault() {
+        if (instance == null) {
+            synchronized (ConcurrencyController.class) {
+                if (instance == null) instance = new ConcurrencyController(16);
+            }
+        }
+        return instance;
+    }
+
+    public static void setDefault(ConcurrencyController controller) {
+        instance = controller;
+    }
+
+    /* Blocks until one more transfer fits in the current limit, the permit must be closed when the transfer ends */
+    public Permit acquire() throws InterruptedIOException {
+        synchronized (this) {
+            try {
+                while (inFlight >= limit) wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a download slot");
+            }
+            inFlight++;
+            if (inFlight >= limit) windowSaturated = true;
+        }
+        return new Permit();
+    }
+
+    private synchronized void release(long bytes, long latency, boolean failed, boolean throttled) {
+        inFlight--;
+        windowBytes += bytes;
+        windowLatency += latency;
+        windowCompleted++;
+        totalBytes += bytes;
+        totalTransfers++;
+        if (failed) {
+            windowErrors++;
+            totalErrors++;
+        }
+        if (throttled) windowThrottled = true;
+
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= WINDOW) evaluate(now);
+        notifyAll();
+    }
+
+    private void evaluate(long now) {
+        double throughput = windowBytes * 1000.0 / Math.max(1, now - windowStart);
+        double latency = (double) windowLatency / Math.max(1, windowCompleted);
+        String reason = null;
+
+        if (windowThrottled) reason = "throttled";
+        else if (windowErrors > 0) reason = "errors";
+        else if (baselineLatency > 0 && latency > baselineLatency * LATENCY_SPIKE) reason = "latency spike";
+
+        if (reason != null) {
+            limit = Math.max(min, limit / 2);
+            log.debug(String.format("Download concurrency cut to %s (%s)", limit, reason));
+        } else if (windowSaturated && throughput >= lastThroughput * IMPROVEMENT) {
+            /* only a window that really used all the slots says something about the limit */
+            limit = Math.min(max, limit + 1);
+        }
+        if (windowErrors == 0) baselineLatency = baselineLatency < 0 ? latency : Math.min(baselineLatency, latency);
+        if (windowSaturated || reason != null) lastThroughput = throughput;
+
+        peakLimit = Math.max(peakLimit, limit);
+        lowestLimit = Math.min(lowestLimit, limit);
+        curve.add(new Sample(now - created, limit, (long) throughput, (long) latency, windowErrors));
+
+        windowStart = now;
+        windowBytes = windowLatency = 0;
+        windowCompleted = windowErrors = 0;
+        windowThrottled = false;
+        windowSaturated = inFlight >= limit;
+    }
+
+    /* Throughput curve, one sample per evaluated window */
+    public synchronized List<Sample> getCurve() {
+        return Collections.unmodifiableList(new ArrayList<>(curve));
+    }
+
+    public synchronized void report() {
+        if (totalTransfers == 0) return;
+        long elapsed = Math.max(1, System.currentTimeMillis() - created);
+        log.info(String.format("Download concurrency: limit %s (range %s-%s, max %s), %s transfers, %s errors, %.2f MB/s average",
+                limit, lowestLimit, peakLimit, max, totalTransfers, totalErrors, totalBytes * 1000.0 / elapsed / 1048576));
+        for (Sample sample : curve) {
+            log.debug(String.format("  t=%sms limit=%s throughput=%.2fMB/s latency=%sms errors=%s",
+                    sample.getTime(), sample.getLimit(), sample.getThroughput() / 1048576.0, sample.getLatency(), sample.getErrors()));
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Sample {
+
+        private final long time;
+        private final int limit;
+        /* bytes per second */
+        private final long throughput;
+        /* milliseconds to the response headers */
+        private final long latency;
+        private final int errors;
+    }
+
+    /* One in-flight transfer, collects what the controller needs to adapt */
+    public class Permit implements Closeable {
+
+        private final long start = System.currentTimeMillis();
+        private long latency = -1, bytes;
+        private boolean failed, throttled, closed;
+
+        /* Response headers arrived */
+        public void responded(int status) {
+            if (latency < 0) latency = System.currentTimeMillis() - start;
+            if (status == 429 || status == 503) throttled = true;
+        }
+
+        public void transferred(int count) {
+            bytes += count;
+        }
+
+        /* Permanent failures (e.g. 404) say nothing about congestion and are not counted */
+        public void failed(IOException e) {
+            if (e instanceof HttpStatusException) responded(((HttpStatusException) e).getStatus());
+            if (RetryPolicy.isRetryable(e)) failed = true;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            release(bytes, latency >= 0 ? latency : System.currentTimeMillis() - start, failed, throttled);
+        }
+    }
+}
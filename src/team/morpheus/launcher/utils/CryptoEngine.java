@@ -16,20 +16,29 @@ public class CryptoEngine {
 
     public static String fileHash(File file, String Algorithm) throws IOException, NoSuchAlgorithmException {
         MessageDigest md = MessageDigest.getInstance(Algorithm);
-        FileInputStream fis = new FileInputStream(file);
-        byte[] dataBytes = new byte[1024];
-        int nread = 0;
-        while ((nread = fis.read(dataBytes)) != -1) {
-            md.update(dataBytes, 0, nread);
+        try (FileInputStream fis = new FileInputStream(file)) {
+            byte[] dataBytes = new byte[65536];
+            int nread = 0;
+            while ((nread = fis.read(dataBytes)) != -1) {
+                md.update(dataBytes, 0, nread);
+            }
         }
-        fis.close();
         return bytesToHex(md.digest());
     }
 
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
     public static String bytesToHex(byte[] bytes) {
-        StringBuffer result = new StringBuffer();
-        for (byte byt : bytes)
-            result.append(Integer.toString((byt & 0xff) + 0x100, 16).substring(1));
-        return result.toString();
+        return bytesToHex(bytes, 0, bytes.length);
+    }
+
+    public static String bytesToHex(byte[] bytes, int offset, int length) {
+        char[] result = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            int byt = bytes[offset + i] & 0xff;
+            result[i * 2] = HEX[byt >>> 4];
+            result[i * 2 + 1] = HEX[byt & 0x0f];
+        }
+        return new String(result);
     }
 }
\ No newline at end of file
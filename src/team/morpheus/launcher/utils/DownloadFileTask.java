@@ -2,31 +2,274 @@ package team.morpheus.launcher.utils;
 
 import team.morpheus.launcher.logging.MyLogger;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
-public class DownloadFileTask implements Runnable {
+/* Streams into <target>.part and renames it over the target only once it is complete,
+ * an interrupted transfer resumes from the bytes already on disk through an http Range request.
+ * When the sha1 is known it is computed over the bytes while they arrive, so the file is never read back.
+ * Big files with a known size are fetched as parallel byte ranges into a preallocated <target>.seg instead.
+ * Meant to run on the scheduler io lane, a failure that survives the retries is thrown to whoever awaits the task */
+public class DownloadFileTask implements Callable<File> {
 
     private static final MyLogger log = new MyLogger(DownloadFileTask.class);
+    /* under this size a single stream is already fast enough */
+    public static final long SEGMENT_THRESHOLD = 8L * 1024 * 1024;
+    private static final long SEGMENT_MIN_SIZE = 2L * 1024 * 1024;
+    private static final int SEGMENTS = 4, SEGMENT_ATTEMPTS = 3;
 
     private final URL source;
     private final String target;
+    private final long size;
+    private final String sha1;
+    private final VerificationIndex index;
+    private volatile boolean segmented;
 
     public DownloadFileTask(URL source, String target) {
+        this(source, target, -1);
+    }
+
+    /* size is the expected length in bytes, -1 when unknown */
+    public DownloadFileTask(URL source, String target, long size) {
+        this(source, target, size, null, null);
+    }
+
+    /* sha1 may be null when unknown, a verified file is recorded into the index to skip the check on next launch */
+    public DownloadFileTask(URL source, String target, long size, String sha1, VerificationIndex index) {
         this.source = source;
         this.target = target;
+        this.size = size;
+        this.sha1 = sha1;
+        this.index = index;
+        this.segmented = size >= SEGMENT_THRESHOLD;
     }
 
     @Override
-    public void run() {
-        try (InputStream in = source.openStream()) {
-            Files.copy(in, Paths.get(target), StandardCopyOption.REPLACE_EXISTING);
-            log.info(String.format("Downloaded: %s from: %s", target, source));
-        } catch (Exception e) {
-            e.printStackTrace();
+    public File call() throws IOException {
+        try {
+            /* every attempt may land on a different mirror, resuming the bytes already fetched */
+            URL used = RetryPolicy.getDefault().execute(source, this::attempt);
+            log.info(String.format("Downloaded: %s from: %s", target, used));
+            return new File(target);
+        } catch (IOException e) {
+            log.error(String.format("Cannot download %s: %s", source, RetryPolicy.describe(e)));
+            throw e;
+        }
+    }
+
+    private URL attempt(URL url) throws IOException {
+        File file = new File(target);
+        File written;
+        String digest;
+        try {
+            if (segmented) {
+                try {
+                    digest = transferSegmented(url, written = new File(target + ".seg"));
+                } catch (RangeNotSupportedException e) {
+                    /* server ignores ranges, fall back to a single stream for this and the next attempts */
+                    log.debug(String.format("%s doesn't support ranges, using a single stream", url));
+                    segmented = false;
+                    digest = metered(url, written = new File(target + ".part"));
+                }
+            } else {
+                digest = metered(url, written = new File(target + ".part"));
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        if (sha1 != null && !sha1.equalsIgnoreCase(digest)) {
+            /* corrupted bytes can't be resumed, next attempt starts over */
+            Files.deleteIfExists(written.toPath());
+            throw new IOException(String.format("Checksum mismatch for %s, expected %s but got %s", url, sha1, digest));
+        }
+        moveInPlace(written, file);
+        if (sha1 != null && index != null) index.record(file, sha1);
+        return url;
+    }
+
+    /* Single stream transfer inside one slot of the concurrency controller */
+    private String metered(URL url, File part) throws IOException, NoSuchAlgorithmException {
+        try (ConcurrencyController.Permit permit = ConcurrencyController.getDefault().acquire()) {
+            try {
+                return transfer(url, part, permit);
+            } catch (IOException e) {
+                permit.failed(e);
+                throw e;
+            }
+        }
+    }
+
+    /* Returns the sha1 of the part file when an expected one was given, null otherwise */
+    private String transfer(URL url, File part, ConcurrencyController.Permit permit) throws IOException, NoSuchAlgorithmException {
+        File parent = part.getParentFile();
+        if (parent != null) parent.mkdirs();
+
+        long offset = part.isFile() ? part.length() : 0;
+        if (size >= 0 && offset > size) {
+            /* leftover of a different file, can't be resumed */
+            Files.delete(part.toPath());
+            offset = 0;
+        }
+        if (size >= 0 && offset == size && part.isFile()) {
+            /* previous attempt got every byte, only the check and the rename are missing */
+            return sha1 != null ? CryptoEngine.fileHash(part, "SHA-1") : null;
+        }
+
+        Map<String, String> headers = offset > 0 ? Collections.singletonMap("Range", String.format("bytes=%s-", offset)) : Collections.emptyMap();
+        try (HttpResponse response = HttpTransport.getDefault().get(url, headers)) {
+            permit.responded(response.getStatus());
+            boolean resumed = response.getStatus() == 206;
+            if (response.getStatus() == 416 && offset > 0) {
+                /* nothing left to send: with an unknown size the part may be complete already, its hash or the total length
+                 * the server gives in Content-Range tells. Otherwise it's a leftover of a different file, start over */
+                if (size < 0 && sha1 != null) {
+                    String digest = CryptoEngine.fileHash(part, "SHA-1");
+                    if (sha1.equalsIgnoreCase(digest)) return digest;
+                } else if (size < 0 && String.format("bytes */%s", offset).equals(String.valueOf(response.getHeader("Content-Range")).trim())) {
+                    return null;
+                }
+                Files.delete(part.toPath());
+                throw new IOException("Range not satisfiable, restarting");
+            }
+            if (response.getStatus() != 200 && !resumed) throw new HttpStatusException(url, response);
+            if (offset > 0 && resumed) log.debug(String.format("Resuming %s from byte %s", url, offset));
+
+            long expected = response.getContentLength() >= 0 ? (resumed ? offset : 0) + response.getContentLength() : -1;
+            MessageDigest digest = sha1 != null ? MessageDigest.getInstance("SHA-1") : null;
+            byte[] buffer = new byte[65536];
+            int read;
+            if (digest != null && resumed) {
+                /* the digest must cover the bytes kept from the previous attempt too */
+                try (InputStream in = new FileInputStream(part)) {
+                    while ((read = in.read(buffer)) != -1) digest.update(buffer, 0, read);
+                }
+            }
+            try (InputStream in = response.getBody(); OutputStream out = new FileOutputStream(part, resumed)) {
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    permit.transferred(read);
+                    if (digest != null) digest.update(buffer, 0, read);
+                }
+            }
+
+            long actual = part.length();
+            if (expected >= 0 && actual != expected)
+                throw new IOException(String.format("Incomplete transfer, got %s of %s bytes", actual, expected));
+
+            if (size >= 0 && actual != size) {
+                Files.delete(part.toPath());
+                throw new IOException(String.format("Size mismatch, expected %s bytes but got %s", size, actual));
+            }
+            return digest != null ? CryptoEngine.bytesToHex(digest.digest()) : null;
+        }
+    }
+
+    /* Returns the sha1 of the assembled file when an expected one was given, null otherwise */
+    private String transferSegmented(URL url, File seg) throws IOException, NoSuchAlgorithmException {
+        File parent = seg.getParentFile();
+        if (parent != null) parent.mkdirs();
+
+        /* a leftover .seg has holes in unknown places, it is never resumed */
+        Files.deleteIfExists(seg.toPath());
+        int count = (int) Math.min(SEGMENTS, (size + SEGMENT_MIN_SIZE - 1) / SEGMENT_MIN_SIZE);
+        long length = (size + count - 1) / count;
+
+        try (RandomAccessFile raf = new RandomAccessFile(seg, "rw")) {
+            raf.setLength(size);
+            FileChannel channel = raf.getChannel();
+
+            /* segments share the io lane with every other download, one still queued is fetched by this thread */
+            List<Future<Void>> segments = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                long from = i * length, to = Math.min(size, from + length) - 1;
+                segments.add(TaskScheduler.getDefault().io(() -> {
+                    fetchSegment(url, channel, from, to);
+                    return null;
+                }));
+            }
+            TaskScheduler.awaitAll(segments);
+        } catch (IOException e) {
+            Files.deleteIfExists(seg.toPath());
+            /* awaitAll throws the first failure it meets, a segment that found no range support may be among the others */
+            if (e instanceof RangeNotSupportedException) throw e;
+            for (Throwable other : e.getSuppressed()) if (other instanceof RangeNotSupportedException) throw (RangeNotSupportedException) other;
+            throw e;
+        }
+        log.debug(String.format("Fetched %s in %s segments", url, count));
+        /* segments arrive out of order, so here the file is hashed once after assembly */
+        return sha1 != null ? CryptoEngine.fileHash(seg, "SHA-1") : null;
+    }
+
+    /* Every segment retries on its own, resuming from the last byte it wrote */
+    private void fetchSegment(URL url, FileChannel channel, long from, long to) throws IOException {
+        long position = from;
+        for (int attempt = 1; ; attempt++) {
+            try (ConcurrencyController.Permit permit = ConcurrencyController.getDefault().acquire()) {
+                try (HttpResponse response = HttpTransport.getDefault().get(url, Collections.singletonMap("Range", String.format("bytes=%s-%s", position, to)))) {
+                    permit.responded(response.getStatus());
+                    if (response.getStatus() == 200) throw new RangeNotSupportedException();
+                    if (response.getStatus() != 206) throw new HttpStatusException(url, response);
+
+                    byte[] buffer = new byte[65536];
+                    int read;
+                    InputStream in = response.getBody();
+                    while (position <= to && (read = in.read(buffer, 0, (int) Math.min(buffer.length, to - position + 1))) != -1) {
+                        ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                        while (bytes.hasRemaining()) position += channel.write(bytes, position);
+                        permit.transferred(read);
+                    }
+                    if (position <= to) throw new IOException(String.format("Segment %s-%s ended at %s", from, to, position));
+                    return;
+                } catch (RangeNotSupportedException e) {
+                    throw e;
+                } catch (IOException e) {
+                    permit.failed(e);
+                    throw e;
+                }
+            } catch (RangeNotSupportedException e) {
+                throw e;
+            } catch (IOException e) {
+                if (attempt == SEGMENT_ATTEMPTS || !RetryPolicy.isRetryable(e)) throw e;
+                long delay = RetryPolicy.getDefault().delay(attempt, e);
+                log.warn(String.format("Segment %s-%s of %s failed (%s), retrying in %sms", from, to, url, RetryPolicy.describe(e), delay));
+                RetryPolicy.sleep(delay);
+            }
+        }
+    }
+
+    private static void moveInPlace(File part, File file) throws IOException {
+        try {
+            Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static class RangeNotSupportedException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        RangeNotSupportedException() {
+            super("Range requests not supported");
         }
     }
-}
\ No newline at end of file
+}
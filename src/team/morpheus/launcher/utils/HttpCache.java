@@ -0,0 +1,120 @@
+package team.morpheus.launcher.utils;
+
+import team.morpheus.launcher.logging.MyLogger;
+
+import java.io.*;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+/* Disk cache of the metadata requests (versions lists, loader profiles, checksums) made through Utils.makeGetRequest.
+ * Responses are kept in cache/http with their ETag and Last-Modified, a cached url is revalidated with a conditional
+ * request so an unchanged one costs just a 304, and when the server can't be reached the cached copy is served as it is */
+public class HttpCache {
+
+    private static final MyLogger log = new MyLogger(HttpCache.class);
+    /* a cached copy is there to fall back on, no point in waiting for retries */
+    private static final RetryPolicy REVALIDATION = new RetryPolicy(1, 0, 0);
+
+    private static volatile HttpCache instance;
+
+    private final File folder;
+
+    public HttpCache(File folder) {
+        this.folder = folder;
+    }
+
+    /* null until the launcher sets one, requests then go straight to the network */
+    public static HttpCache getDefault() {
+        return instance;
+    }
+
+    public static void setDefault(HttpCache cache) {
+        instance = cache;
+    }
+
+    /* Returns the file holding the body of the url, revalidated or downloaded first */
+    public File get(URL url, RetryPolicy retryPolicy) throws IOException {
+        String key = key(url);
+        File bodyFile = new File(folder, key + ".body"), metaFile = new File(folder, key + ".properties");
+        Properties meta = readMeta(metaFile);
+        boolean cached = meta != null && bodyFile.isFile();
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept-Encoding", "gzip");
+        if (cached && meta.getProperty("etag") != null) headers.put("If-None-Match", meta.getProperty("etag"));
+        if (cached && meta.getProperty("last-modified") != null) headers.put("If-Modified-Since", meta.getProperty("last-modified"));
+
+        try {
+            boolean modified = (cached ? REVALIDATION : retryPolicy).execute(url, source -> {
+                try (HttpResponse response = HttpTransport.getDefault().get(source, headers)) {
+                    if (cached && response.getStatus() == 304) return false;
+                    if (!response.isSuccessful()) throw new HttpStatusException(source, response);
+
+                    InputStream in = response.getBody();
+                    if ("gzip".equalsIgnoreCase(response.getHeader("Content-Encoding"))) in = new GZIPInputStream(in, 65536);
+                    store(bodyFile, metaFile, url, response, in);
+                    return true;
+                }
+            });
+            if (!modified) log.debug(String.format("Not modified: %s", url));
+        } catch (IOException e) {
+            /* the server answered for real (e.g. 404), the cached copy would just hide it */
+            if (!cached || (e instanceof HttpStatusException && !RetryPolicy.isRetryable(e))) throw e;
+            if (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)) throw e;
+            log.warn(String.format("Cannot revalidate %s (%s), using the cached copy", url, RetryPolicy.describe(e)));
+        }
+        return bodyFile;
+    }
+
+    /* The body is streamed straight to disk, the meta file is written after it so it always describes a complete body */
+    private void store(File bodyFile, File metaFile, URL url, HttpResponse response, InputStream in) throws IOException {
+        folder.mkdirs();
+        File temp = File.createTempFile(bodyFile.getName(), ".tmp", folder);
+        try {
+            Files.copy(in, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp.toPath(), bodyFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+
+        Properties meta = new Properties();
+        meta.setProperty("url", url.toString());
+        if (response.getHeader("ETag") != null) meta.setProperty("etag", response.getHeader("ETag"));
+        if (response.getHeader("Last-Modified") != null) meta.setProperty("last-modified", response.getHeader("Last-Modified"));
+        File metaTemp = File.createTempFile(metaFile.getName(), ".tmp", folder);
+        try {
+            try (OutputStream out = new FileOutputStream(metaTemp)) {
+                meta.store(out, null);
+            }
+            Files.move(metaTemp.toPath(), metaFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(metaTemp.toPath());
+        }
+    }
+
+    private static Properties readMeta(File metaFile) {
+        if (!metaFile.isFile()) return null;
+        Properties meta = new Properties();
+        try (InputStream in = new FileInputStream(metaFile)) {
+            meta.load(in);
+            return meta;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String key(URL url) throws IOException {
+        try {
+            return CryptoEngine.hash256(url.toString()).substring(0, 40);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+}
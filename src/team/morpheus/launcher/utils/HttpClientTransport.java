@@ -0,0 +1,183 @@
+package team.morpheus.launcher.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/* java.net.http transport (java 11+), one shared client pools connections per host and multiplexes over HTTP/2.
+ * Method Handles instead of direct calls, to make the launcher still compile and run on java 8 */
+public class HttpClientTransport extends HttpTransport {
+
+    /* times the body reads, a single daemon thread is enough as it only ever interrupts a stalled reader */
+    private static final ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+        thread.setName("morpheus-http-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        watchdog.setRemoveOnCancelPolicy(true);
+    }
+
+    private final Object client, bodyHandler;
+    private final MethodHandle newRequest, header, timeout, method, noBody, build, send, statusCode, body, headers, headersMap;
+
+    public HttpClientTransport() throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        Class<?> clientClass = Class.forName("java.net.http.HttpClient");
+        Class<?> clientBuilderClass = Class.forName("java.net.http.HttpClient$Builder");
+        Class<?> versionClass = Class.forName("java.net.http.HttpClient$Version");
+        Class<?> redirectClass = Class.forName("java.net.http.HttpClient$Redirect");
+        Class<?> requestClass = Class.forName("java.net.http.HttpRequest");
+        Class<?> requestBuilderClass = Class.forName("java.net.http.HttpRequest$Builder");
+        Class<?> publisherClass = Class.forName("java.net.http.HttpRequest$BodyPublisher");
+        Class<?> publishersClass = Class.forName("java.net.http.HttpRequest$BodyPublishers");
+        Class<?> responseClass = Class.forName("java.net.http.HttpResponse");
+        Class<?> handlerClass = Class.forName("java.net.http.HttpResponse$BodyHandler");
+        Class<?> handlersClass = Class.forName("java.net.http.HttpResponse$BodyHandlers");
+        Class<?> headersClass = Class.forName("java.net.http.HttpHeaders");
+
+        try {
+            Object builder = lookup.findStatic(clientClass, "newBuilder", MethodType.methodType(clientBuilderClass)).invoke();
+            builder = lookup.findVirtual(clientBuilderClass, "version", MethodType.methodType(clientBuilderClass, versionClass)).invoke(builder, enumValue(versionClass, "HTTP_2"));
+            builder = lookup.findVirtual(clientBuilderClass, "followRedirects", MethodType.methodType(clientBuilderClass, redirectClass)).invoke(builder, enumValue(redirectClass, "NORMAL"));
+            builder = lookup.findVirtual(clientBuilderClass, "connectTimeout", MethodType.methodType(clientBuilderClass, Duration.class)).invoke(builder, Duration.ofMillis(CONNECT_TIMEOUT));
+            client = lookup.findVirtual(clientBuilderClass, "build", MethodType.methodType(clientClass)).invoke(builder);
+            bodyHandler = lookup.findStatic(handlersClass, "ofInputStream", MethodType.methodType(handlerClass)).invoke();
+            noBody = lookup.findStatic(publishersClass, "noBody", MethodType.methodType(publisherClass));
+        } catch (ReflectiveOperationException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new ReflectiveOperationException(e);
+        }
+
+        newRequest = lookup.findStatic(requestClass, "newBuilder", MethodType.methodType(requestBuilderClass, URI.class));
+        header = lookup.findVirtual(requestBuilderClass, "header", MethodType.methodType(requestBuilderClass, String.class, String.class));
+        timeout = lookup.findVirtual(requestBuilderClass, "timeout", MethodType.methodType(requestBuilderClass, Duration.class));
+        method = lookup.findVirtual(requestBuilderClass, "method", MethodType.methodType(requestBuilderClass, String.class, publisherClass));
+        build = lookup.findVirtual(requestBuilderClass, "build", MethodType.methodType(requestClass));
+        send = lookup.findVirtual(clientClass, "send", MethodType.methodType(responseClass, requestClass, handlerClass));
+        statusCode = lookup.findVirtual(responseClass, "statusCode", MethodType.methodType(int.class));
+        body = lookup.findVirtual(responseClass, "body", MethodType.methodType(Object.class));
+        headers = lookup.findVirtual(responseClass, "headers", MethodType.methodType(headersClass));
+        headersMap = lookup.findVirtual(headersClass, "map", MethodType.methodType(Map.class));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected HttpResponse request(String method, URL url, Map<String, String> headers) throws IOException {
+        try {
+            Object builder = newRequest.invoke(url.toURI());
+            /* the request timeout covers only the wait for the response headers, the body gets its own idle timeout below */
+            builder = timeout.invoke(builder, Duration.ofMillis(READ_TIMEOUT));
+            builder = header.invoke(builder, "User-Agent", getUserAgent());
+            for (Map.Entry<String, String> entry : headers.entrySet()) builder = header.invoke(builder, entry.getKey(), entry.getValue());
+            builder = this.method.invoke(builder, method, noBody.invoke());
+
+            Object response = send.invoke(client, build.invoke(builder), bodyHandler);
+            Map<String, List<String>> map = (Map<String, List<String>>) headersMap.invoke(this.headers.invoke(response));
+            return new HttpResponse((int) statusCode.invoke(response), map, new IdleTimeoutInputStream((InputStream) body.invoke(response)));
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (URISyntaxException e) {
+            throw new IOException(String.format("Invalid url: %s", url), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format("Interrupted while requesting %s", url));
+        } catch (Throwable e) {
+            throw new IOException(e);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object enumValue(Class<?> enumClass, String name) {
+        return Enum.valueOf((Class) enumClass, name);
+    }
+
+    /* The body stream of HttpClient blocks with no limit when the server stalls, every read here is given READ_TIMEOUT
+     * to return some bytes, like the read timeout of HttpURLConnection. A stalled read gets its stream closed and is
+     * interrupted (the HttpClient stream only notices the close once woken up), then it's turned into the
+     * SocketTimeoutException the retry policy expects */
+    private static class IdleTimeoutInputStream extends FilterInputStream {
+
+        private Thread reader;
+        private long reads;
+        private boolean timedOut;
+
+        IdleTimeoutInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long read = start();
+            ScheduledFuture<?> timer = watchdog.schedule(() -> expire(read), READ_TIMEOUT, TimeUnit.MILLISECONDS);
+            boolean done = false;
+            try {
+                int result = super.read();
+                done = true;
+                return result;
+            } finally {
+                finish(timer, done);
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            long read = start();
+            ScheduledFuture<?> timer = watchdog.schedule(() -> expire(read), READ_TIMEOUT, TimeUnit.MILLISECONDS);
+            boolean done = false;
+            try {
+                int result = super.read(buffer, offset, length);
+                done = true;
+                return result;
+            } finally {
+                finish(timer, done);
+            }
+        }
+
+        private synchronized long start() {
+            reader = Thread.currentThread();
+            return ++reads;
+        }
+
+        /* only the read that was started with this timer, and only while it's still blocked */
+        private synchronized void expire(long read) {
+            if (reader == null || reads != read) return;
+            timedOut = true;
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+            reader.interrupt();
+        }
+
+        /* the interrupt of the watchdog never leaks out of the read, a read that made it anyway still returns its bytes */
+        private void finish(ScheduledFuture<?> timer, boolean done) throws SocketTimeoutException {
+            timer.cancel(false);
+            synchronized (this) {
+                reader = null;
+                if (!timedOut) return;
+                timedOut = false;
+                Thread.interrupted();
+            }
+            if (!done) throw new SocketTimeoutException(String.format("Read timed out, no data for %s ms", READ_TIMEOUT));
+        }
+    }
+}
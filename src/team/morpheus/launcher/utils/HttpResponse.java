@@ -0,0 +1,53 @@
+package team.morpheus.launcher.utils;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/* Transport independent http response, closing it hands the connection back to the transport pool */
+public class HttpResponse implements Closeable {
+
+    @Getter
+    private final int status;
+    @Getter
+    private final InputStream body;
+    private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    public HttpResponse(int status, Map<String, List<String>> headers, InputStream body) {
+        this.status = status;
+        this.body = body;
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            /* HttpURLConnection stores the status line under a null key */
+            if (header.getKey() != null) this.headers.put(header.getKey(), header.getValue());
+        }
+    }
+
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values != null && !values.isEmpty() ? values.get(0) : null;
+    }
+
+    /* -1 when the server didn't tell */
+    public long getContentLength() {
+        String length = getHeader("Content-Length");
+        try {
+            return length != null ? Long.parseLong(length.trim()) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public boolean isSuccessful() {
+        return status >= 200 && status < 300;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (body != null) body.close();
+    }
+}
@@ -0,0 +1,32 @@
+package team.morpheus.launcher.utils;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.net.URL;
+
+/* Non successful http reply, keeps the status so retry logic can tell transient errors from permanent ones */
+@Getter
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+    /* seconds asked by the server through Retry-After, -1 when absent */
+    private final long retryAfter;
+
+    public HttpStatusException(URL url, HttpResponse response) {
+        super(String.format("Server replied %s for %s", response.getStatus(), url));
+        this.status = response.getStatus();
+        this.retryAfter = parseRetryAfter(response.getHeader("Retry-After"));
+    }
+
+    private static long parseRetryAfter(String value) {
+        if (value == null) return -1;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1; // http-date form, ignored
+        }
+    }
+}
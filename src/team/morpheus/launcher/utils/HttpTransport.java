@@ -0,0 +1,69 @@
+package team.morpheus.launcher.utils;
+
+import team.morpheus.launcher.Main;
+import team.morpheus.launcher.logging.MyLogger;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+
+/* Every download and metadata request goes through the default transport, so connections are pooled in one place.
+ * On java 11+ the builtin HttpClient is used (persistent connections, HTTP/2 multiplexing when the server allows it),
+ * on java 8 it falls back to HttpURLConnection with a keep-alive cache sized for the download pool */
+public abstract class HttpTransport {
+
+    private static final MyLogger log = new MyLogger(HttpTransport.class);
+    public static final int CONNECT_TIMEOUT = 10000, READ_TIMEOUT = 30000;
+
+    private static volatile HttpTransport instance;
+
+    public static HttpTransport getDefault() {
+        if (instance == null) {
+            synchronized (HttpTransport.class) {
+                if (instance == null) instance = create(16);
+            }
+        }
+        return instance;
+    }
+
+    /* Pluggable, whoever needs a different transport (tests, proxies) can replace the default one */
+    public static void setDefault(HttpTransport transport) {
+        instance = transport;
+    }
+
+    /* Picks the best transport for the running jvm, -Dmorpheus.http=urlconnection forces the java 8 one */
+    public static HttpTransport create(int maxConnections) {
+        if (!"urlconnection".equalsIgnoreCase(System.getProperty("morpheus.http"))) {
+            try {
+                HttpTransport transport = new HttpClientTransport();
+                log.debug("Using java.net.http transport");
+                return transport;
+            } catch (ReflectiveOperationException e) {
+                /* java 8, no java.net.http module */
+            }
+        }
+        log.debug("Using HttpURLConnection transport");
+        return new UrlConnectionTransport(maxConnections);
+    }
+
+    public static String getUserAgent() {
+        return String.format("Morpheus Launcher %s", Main.build);
+    }
+
+    public HttpResponse get(URL url) throws IOException {
+        return request("GET", url, Collections.emptyMap());
+    }
+
+    public HttpResponse get(URL url, Map<String, String> headers) throws IOException {
+        return request("GET", url, headers);
+    }
+
+    /* Body is always empty */
+    public HttpResponse head(URL url) throws IOException {
+        return request("HEAD", url, Collections.emptyMap());
+    }
+
+    /* The caller must close the returned response, even when the status isn't successful */
+    protected abstract HttpResponse request(String method, URL url, Map<String, String> headers) throws IOException;
+}
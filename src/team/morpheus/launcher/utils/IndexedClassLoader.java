@@ -0,0 +1,415 @@
+package team.morpheus.launcher.utils;
+
+import team.morpheus.launcher.logging.MyLogger;
+
+import java.io.*;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+/* URLClassLoader that knows in which jars each directory (package) is, so a lookup checks just the jars having
+ * that package instead of probing the whole classpath, a miss costs nothing at all.
+ * Delegation, getURLs and addURL stay the ones of URLClassLoader, LaunchWrapper and Knot see no difference.
+ * The index is saved to a file and reused while the jars keep size and date, a changed jar is scanned again alone.
+ * Urls that aren't jars (e.g. directories) and multi-release jars on java 9+ go through URLClassLoader as before */
+public class IndexedClassLoader extends URLClassLoader {
+
+    private static final MyLogger log = new MyLogger(IndexedClassLoader.class);
+    private static final int MAGIC = 0x4D434C31; // "MCL1"
+    private static final boolean VERSIONED = !System.getProperty("java.specification.version", "").startsWith("1.");
+    private static final Jar[] NONE = new Jar[0];
+    /* ClassLoader.getDefinedPackage, java 9+ only */
+    private static final MethodHandle DEFINED_PACKAGE = definedPackageHandle();
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final List<Jar> jars = new CopyOnWriteArrayList<>();
+    /* directory of an entry, e.g. "net/minecraft/client/", to the jars having entries in it in classpath order */
+    private final Map<String, Jar[]> directories = new ConcurrentHashMap<>();
+    /* false when some url isn't indexed, a miss must then ask URLClassLoader */
+    private volatile boolean complete = true;
+
+    public IndexedClassLoader(URL[] urls, File indexFile) {
+        super(urls);
+        Map<String, Jar> saved = read(indexFile);
+
+        /* jars missing from the saved index or changed since are scanned side by side */
+        List<URL> indexed = new ArrayList<>();
+        List<Jar> found = new ArrayList<>();
+        List<Future<Jar>> scans = new ArrayList<>();
+        for (URL url : urls) {
+            File file = toFile(url);
+            if (file == null) {
+                complete = false;
+                continue;
+            }
+            Jar jar = saved.get(file.getPath());
+            boolean current = jar != null && jar.isCurrent();
+            indexed.add(url);
+            found.add(current ? jar.at(url) : null);
+            scans.add(current ? null : TaskScheduler.getDefault().io(() -> scan(file, url)));
+        }
+
+        int scanned = 0;
+        for (int i = 0; i < found.size(); i++) {
+            Jar jar = found.get(i);
+            if (jar == null) {
+                try {
+                    jar = TaskScheduler.await(scans.get(i));
+                    scanned++;
+                } catch (IOException e) {
+                    log.warn(String.format("Cannot index %s: %s", indexed.get(i), RetryPolicy.describe(e)));
+                    complete = false;
+                    continue;
+                }
+            }
+            add(jar);
+        }
+        log.info(String.format("Class index of %s jars ready, %s scanned", jars.size(), scanned));
+        if (scanned > 0) write(indexFile);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        String path = name.replace('.', '/').concat(".class");
+        Jar jar = first(path);
+        if (jar == null) {
+            if (complete) throw new ClassNotFoundException(name);
+            return super.findClass(name);
+        }
+        /* the class may come from META-INF/versions, URLClassLoader knows which one to take */
+        if (jar.isVersionedHere()) return super.findClass(name);
+
+        try {
+            JarFile file = jar.open();
+            JarEntry entry = file.getJarEntry(path);
+            byte[] bytes;
+            try (InputStream in = file.getInputStream(entry)) {
+                bytes = readFully(in, entry.getSize());
+            }
+            int dot = name.lastIndexOf('.');
+            if (dot > 0) definePackage(name.substring(0, dot), jar);
+            /* signers are known once the entry has been read */
+            return defineClass(name, bytes, 0, bytes.length, new CodeSource(jar.url, entry.getCodeSigners()));
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+    }
+
+    @Override
+    public URL findResource(String name) {
+        Jar jar = first(name);
+        if (jar == null) return complete ? null : super.findResource(name);
+        if (jar.isVersionedHere()) return super.findResource(name);
+        return jar.resource(name);
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        if (!complete) return super.findResources(name);
+        List<URL> urls = new ArrayList<>();
+        for (Jar jar : candidates(name)) {
+            if (jar.isVersionedHere()) return super.findResources(name);
+            if (jar.has(name)) urls.add(jar.resource(name));
+        }
+        return Collections.enumeration(urls);
+    }
+
+    /* Modloaders may add jars while running, they're indexed on the spot */
+    @Override
+    protected void addURL(URL url) {
+        super.addURL(url);
+        File file = toFile(url);
+        try {
+            if (file == null) throw new FileNotFoundException(url.toString());
+            add(scan(file, url));
+        } catch (IOException e) {
+            complete = false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Jar jar : jars) jar.close();
+        super.close();
+    }
+
+    private synchronized void add(Jar jar) {
+        jars.add(jar);
+        for (String directory : jar.directories) {
+            Jar[] previous = directories.get(directory);
+            Jar[] next = previous == null ? new Jar[1] : Arrays.copyOf(previous, previous.length + 1);
+            next[next.length - 1] = jar;
+            directories.put(directory, next);
+        }
+    }
+
+    /* First jar having the entry; a multi-release jar may have it just under META-INF/versions, so it's
+     * returned as it is and the caller leaves the lookup to URLClassLoader */
+    private Jar first(String name) {
+        for (Jar jar : candidates(name)) if (jar.isVersionedHere() || jar.has(name)) return jar;
+        return null;
+    }
+
+    private Jar[] candidates(String name) {
+        Jar[] candidates = directories.get(directoryOf(name));
+        return candidates != null ? candidates : NONE;
+    }
+
+    private void definePackage(String name, Jar jar) throws IOException {
+        Manifest manifest = jar.manifest();
+        if (verifyPackage(name, manifest, jar.url)) return;
+        try {
+            if (manifest != null) definePackage(name, manifest, jar.url);
+            else definePackage(name, null, null, null, null, null, null, null);
+        } catch (IllegalArgumentException e) {
+            /* defined meanwhile by another thread */
+            verifyPackage(name, manifest, jar.url);
+        }
+    }
+
+    /* The checks of URLClassLoader: a sealed package takes classes only from its own jar, and a jar can't seal a
+     * package other jars already loaded classes of. False when the package isn't defined yet */
+    private boolean verifyPackage(String name, Manifest manifest, URL url) {
+        Package pkg = definedPackage(name);
+        if (pkg == null) return false;
+        if (pkg.isSealed()) {
+            if (!pkg.isSealed(url)) throw new SecurityException(String.format("sealing violation: package %s is sealed", name));
+        } else if (manifest != null && isSealed(name, manifest)) {
+            throw new SecurityException(String.format("sealing violation: can't seal package %s: already loaded", name));
+        }
+        return true;
+    }
+
+    /* Like URLClassLoader only the packages of this loader count on java 9+, there getPackage is deprecated as it also
+     * answers with the ones of the parents. Java 8 has nothing else than getPackage */
+    @SuppressWarnings("deprecation")
+    private Package definedPackage(String name) {
+        if (DEFINED_PACKAGE == null) return getPackage(name);
+        try {
+            return (Package) DEFINED_PACKAGE.invoke(this, name);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle definedPackageHandle() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(ClassLoader.class, "getDefinedPackage", MethodType.methodType(Package.class, String.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /* the package entry of the manifest wins over its main attributes */
+    private static boolean isSealed(String name, Manifest manifest) {
+        Attributes attributes = manifest.getAttributes(name.replace('.', '/').concat("/"));
+        String sealed = attributes != null ? attributes.getValue(Attributes.Name.SEALED) : null;
+        if (sealed == null) sealed = manifest.getMainAttributes().getValue(Attributes.Name.SEALED);
+        return "true".equalsIgnoreCase(sealed);
+    }
+
+    /* "a/b/C.class" and "a/b/c/" both live in "a/b/", top level entries in "" */
+    private static String directoryOf(String name) {
+        int end = name.endsWith("/") ? name.length() - 1 : name.length();
+        int slash = name.lastIndexOf('/', end - 1);
+        return slash < 0 ? "" : name.substring(0, slash + 1);
+    }
+
+    private static Jar scan(File file, URL url) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        Set<String> found = new LinkedHashSet<>();
+        boolean multiRelease = false;
+        try (JarFile jar = new JarFile(file, false)) {
+            Enumeration<? extends ZipEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                found.add(directoryOf(name));
+                /* versioned entries are looked up by their plain name */
+                if (name.startsWith("META-INF/versions/")) {
+                    int slash = name.indexOf('/', "META-INF/versions/".length());
+                    if (slash > 0) found.add(directoryOf(name.substring(slash + 1)));
+                }
+            }
+            Manifest manifest = jar.getManifest();
+            if (manifest != null) multiRelease = "true".equalsIgnoreCase(manifest.getMainAttributes().getValue("Multi-Release"));
+        }
+        return new Jar(file, url, attrs.size(), attrs.lastModifiedTime().toMillis(), multiRelease, new ArrayList<>(found));
+    }
+
+    private static File toFile(URL url) {
+        if (!"file".equals(url.getProtocol())) return null;
+        try {
+            File file = new File(url.toURI());
+            return file.isFile() ? file : null;
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static byte[] readFully(InputStream in, long size) throws IOException {
+        if (size >= 0) {
+            byte[] bytes = new byte[(int) size];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) throw new EOFException("Truncated class file");
+                read += n;
+            }
+            return bytes;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) out.write(buffer, 0, n);
+        return out.toByteArray();
+    }
+
+    /* Jars of a previous index by path, empty when there's none or it's unreadable */
+    private static Map<String, Jar> read(File file) {
+        Map<String, Jar> saved = new HashMap<>();
+        if (file == null || !file.isFile()) return saved;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+            if (in.readInt() != MAGIC) return saved;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                File jar = new File(in.readUTF());
+                long size = in.readLong(), lastModified = in.readLong();
+                boolean multiRelease = in.readBoolean();
+                int directories = in.readInt();
+                List<String> names = new ArrayList<>(directories);
+                for (int j = 0; j < directories; j++) names.add(in.readUTF());
+                saved.put(jar.getPath(), new Jar(jar, jar.toURI().toURL(), size, lastModified, multiRelease, names));
+            }
+        } catch (IOException e) {
+            log.warn(String.format("Discarding class index %s: %s", file.getPath(), RetryPolicy.describe(e)));
+            saved.clear();
+        }
+        return saved;
+    }
+
+    private void write(File file) {
+        if (file == null) return;
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536))) {
+                out.writeInt(MAGIC);
+                out.writeInt(jars.size());
+                for (Jar jar : jars) {
+                    out.writeUTF(jar.file.getPath());
+                    out.writeLong(jar.size);
+                    out.writeLong(jar.lastModified);
+                    out.writeBoolean(jar.multiRelease);
+                    out.writeInt(jar.directories.size());
+                    for (String directory : jar.directories) out.writeUTF(directory);
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn(String.format("Cannot write class index %s: %s", file.getPath(), RetryPolicy.describe(e)));
+            temp.delete();
+        }
+    }
+
+    private static class Jar {
+
+        private final File file;
+        private final URL url;
+        private final long size, lastModified;
+        private final boolean multiRelease;
+        private final List<String> directories;
+        /* opened on the first lookup and kept open, like URLClassLoader does */
+        private volatile JarFile jarFile;
+        private volatile Manifest manifest;
+        private volatile boolean manifestRead;
+        private volatile URL base;
+
+        Jar(File file, URL url, long size, long lastModified, boolean multiRelease, List<String> directories) {
+            this.file = file;
+            this.url = url;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.multiRelease = multiRelease;
+            this.directories = directories;
+        }
+
+        /* the same indexed jar, as the url the classpath names it with */
+        Jar at(URL url) {
+            return new Jar(file, url, size, lastModified, multiRelease, directories);
+        }
+
+        boolean isCurrent() {
+            return file.length() == size && file.lastModified() == lastModified;
+        }
+
+        boolean isVersionedHere() {
+            return multiRelease && VERSIONED;
+        }
+
+        JarFile open() throws IOException {
+            JarFile opened = jarFile;
+            if (opened == null) {
+                synchronized (this) {
+                    if (jarFile == null) jarFile = new JarFile(file);
+                    opened = jarFile;
+                }
+            }
+            return opened;
+        }
+
+        boolean has(String name) {
+            try {
+                return open().getEntry(name) != null;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        Manifest manifest() throws IOException {
+            if (!manifestRead) {
+                manifest = open().getManifest();
+                manifestRead = true;
+            }
+            return manifest;
+        }
+
+        /* The same jar: url URLClassLoader would give, names needing no escaping (nearly all) skip the URI */
+        URL resource(String name) {
+            try {
+                if (base == null) base = new URL("jar:" + url + "!/");
+                return new URL(base, isPlain(name) ? name : new URI(null, null, name, null).getRawPath());
+            } catch (MalformedURLException | URISyntaxException e) {
+                return null;
+            }
+        }
+
+        private static boolean isPlain(String name) {
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if ((c < 'a' || c > 'z') && (c < 'A' || c > 'Z') && (c < '0' || c > '9') && "/._-$+".indexOf(c) < 0) return false;
+            }
+            return true;
+        }
+
+        synchronized void close() throws IOException {
+            if (jarFile != null) jarFile.close();
+            jarFile = null;
+        }
+    }
+}
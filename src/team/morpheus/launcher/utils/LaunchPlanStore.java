@@ -0,0 +1,150 @@
+package team.morpheus.launcher.utils;
+
+import team.morpheus.launcher.logging.MyLogger;
+import team.morpheus.launcher.model.LaunchPlan;
+import team.morpheus.launcher.model.products.MojangProduct;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/* Binary form of the LaunchPlan and the check of its inputs: a stat per input file,
+ * the sha1 is only computed again for a file whose stat data changed */
+public class LaunchPlanStore {
+
+    private static final MyLogger log = new MyLogger(LaunchPlanStore.class);
+    private static final int MAGIC = 0x4D4C5031; // "MLP1"
+
+    /* null when there is no plan, it's unreadable or it was made for another context */
+    public static LaunchPlan load(File file, String context) {
+        if (!file.isFile()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+            if (in.readInt() != MAGIC || !in.readUTF().equals(context)) return null;
+            String versionId = in.readUTF(), baseVersion = in.readUTF(), mainClass = in.readUTF();
+            List<String> arguments = readStrings(in), extraArguments = readStrings(in);
+            List<File> classpath = new ArrayList<>();
+            for (String path : readStrings(in)) classpath.add(new File(path));
+            File clientJar = new File(in.readUTF());
+            boolean compatibility = in.readBoolean();
+            File nativesFolder = new File(in.readUTF()), assetIndex = new File(in.readUTF());
+            int count = in.readInt();
+            List<LaunchPlan.Input> inputs = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                File input = new File(in.readUTF());
+                long size = in.readLong(), lastModified = in.readLong();
+                String sha1 = in.readUTF();
+                String id = in.readBoolean() ? in.readUTF() : null;
+                inputs.add(new LaunchPlan.Input(input, size, lastModified, sha1, id));
+            }
+            return new LaunchPlan(context, versionId, baseVersion, mainClass, arguments, extraArguments, classpath, clientJar, compatibility, nativesFolder, assetIndex, inputs);
+        } catch (IOException e) {
+            log.warn(String.format("Discarding launch plan %s: %s", file.getPath(), RetryPolicy.describe(e)));
+            return null;
+        }
+    }
+
+    public static void save(File file, LaunchPlan plan) {
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(plan.getContext());
+                out.writeUTF(plan.getVersionId());
+                out.writeUTF(plan.getBaseVersion());
+                out.writeUTF(plan.getMainClass());
+                writeStrings(out, plan.getArguments());
+                writeStrings(out, plan.getExtraArguments());
+                List<String> classpath = new ArrayList<>();
+                for (File library : plan.getClasspath()) classpath.add(library.getPath());
+                writeStrings(out, classpath);
+                out.writeUTF(plan.getClientJar().getPath());
+                out.writeBoolean(plan.isCompatibility());
+                out.writeUTF(plan.getNativesFolder().getPath());
+                out.writeUTF(plan.getAssetIndex().getPath());
+                out.writeInt(plan.getInputs().size());
+                for (LaunchPlan.Input input : plan.getInputs()) {
+                    out.writeUTF(input.getFile().getPath());
+                    out.writeLong(input.getSize());
+                    out.writeLong(input.getLastModified());
+                    out.writeUTF(input.getSha1());
+                    out.writeBoolean(input.getVersionId() != null);
+                    if (input.getVersionId() != null) out.writeUTF(input.getVersionId());
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn(String.format("Cannot write launch plan %s: %s", file.getPath(), RetryPolicy.describe(e)));
+            temp.delete();
+        }
+    }
+
+    /* Describes an existing file as an input of a plan */
+    public static LaunchPlan.Input input(File file, String versionId, VerificationIndex verifier) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        String sha1 = hash(file, verifier);
+        if (sha1 == null) throw new FileNotFoundException(file.getPath());
+        return new LaunchPlan.Input(file, attrs.size(), attrs.lastModifiedTime().toMillis(), sha1, versionId);
+    }
+
+    public static boolean isValid(LaunchPlan plan, VerificationIndex verifier, VersionManifest versions) throws IOException {
+        for (LaunchPlan.Input input : plan.getInputs()) {
+            if (!matches(input, verifier)) {
+                log.info(String.format("Launch plan outdated, %s changed", input.getFile().getName()));
+                return false;
+            }
+        }
+
+        /* a json republished by mojang shows up as another hash in the versions list,
+         * which comes from the cache unless expired; without any list the files alone decide */
+        try {
+            versions.load();
+        } catch (IOException e) {
+            return true;
+        }
+        for (LaunchPlan.Input input : plan.getInputs()) {
+            if (input.getVersionId() == null) continue;
+            MojangProduct.Version version = versions.find(input.getVersionId());
+            if (version != null && version.url != null && !version.url.contains(input.getSha1())) {
+                log.info(String.format("Launch plan outdated, %s was updated by mojang", input.getVersionId()));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(LaunchPlan.Input input, VerificationIndex verifier) throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(input.getFile().toPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            return false;
+        }
+        if (attrs.size() == input.getSize() && attrs.lastModifiedTime().toMillis() == input.getLastModified()) return true;
+        /* touched but maybe not changed */
+        return input.getSha1().equalsIgnoreCase(hash(input.getFile(), verifier));
+    }
+
+    private static String hash(File file, VerificationIndex verifier) throws IOException {
+        try {
+            return verifier.hash(file);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) strings.add(in.readUTF());
+        return strings;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) out.writeUTF(string);
+    }
+}
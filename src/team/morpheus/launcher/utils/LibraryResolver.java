@@ -0,0 +1,120 @@
+package team.morpheus.launcher.utils;
+
+import team.morpheus.launcher.logging.MyLogger;
+import team.morpheus.launcher.model.LibraryArtifact;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* Offline first: a library found on disk and matching its hash is used as it is, the network is touched
+ * only for missing or broken files. Maven libraries without a sha1 in the json are checked against the
+ * <jar>.sha1 sidecar, fetched next to the jar and kept on disk like a maven local repository does */
+public class LibraryResolver {
+
+    private static final MyLogger log = new MyLogger(LibraryResolver.class);
+
+    private final File librariesFolder;
+    private final VerificationIndex verifier;
+    /* one resolution per jar and launch, modloader and vanilla plans often share libraries */
+    private final Map<String, CompletableFuture<File>> resolutions = new ConcurrentHashMap<>();
+
+    public LibraryResolver(File librariesFolder, VerificationIndex verifier) {
+        this.librariesFolder = librariesFolder;
+        this.verifier = verifier;
+    }
+
+    /* Resolves the whole plan on the io lane, the returned files keep the order of the plan */
+    public List<File> resolveAll(List<LibraryArtifact> plan) throws IOException {
+        List<CompletableFuture<File>> futures = new ArrayList<>();
+        for (LibraryArtifact artifact : plan) {
+            futures.add(resolutions.computeIfAbsent(artifact.getPath(), path -> TaskScheduler.getDefault().io(() -> resolve(artifact))));
+        }
+        TaskScheduler.awaitAll(futures);
+
+        List<File> files = new ArrayList<>();
+        for (CompletableFuture<File> future : futures) files.add(TaskScheduler.await(future));
+        return files;
+    }
+
+    public File resolve(LibraryArtifact artifact) throws IOException {
+        if (artifact.getRepository() != null) return resolveMaven(artifact.getPath(), artifact.getRepository());
+        return resolve(artifact.getPath(), artifact.getUrl(), artifact.getSha1(), artifact.getSize());
+    }
+
+    /* Library described by the json (downloads.artifact), url may be empty for artifacts installed locally */
+    public File resolve(String path, String url, String sha1, long size) throws IOException {
+        File file = new File(librariesFolder, path);
+        if (verify(file, sha1) || url == null || url.isEmpty()) return file;
+
+        download(new DownloadFileTask(new URL(url), file.getPath(), size > 0 ? size : -1, sha1, verifier));
+        return file;
+    }
+
+    /* Library known only by its maven path, fetched from the given repository when missing or corrupted.
+     * A jar that can't be had fails the resolution, the launch would only die later on a missing class */
+    public File resolveMaven(String path, String repository) throws IOException {
+        File file = new File(librariesFolder, path);
+        File sidecar = new File(file.getPath() + ".sha1");
+        String expected = readSidecar(sidecar);
+        /* without a sidecar there is nothing to check against, the jar was put there by an installer */
+        if (file.isFile() && (expected == null || verify(file, expected))) return file;
+
+        URL source = new URL(String.format("%s/%s", repository.replaceAll("/+$", ""), path));
+        expected = fetchSidecar(new URL(source + ".sha1"));
+        try {
+            download(new DownloadFileTask(source, file.getPath(), -1, expected, verifier));
+        } catch (HttpStatusException e) {
+            throw new IOException(String.format("%s is not available on %s (%s)", path, repository, e.getStatus()), e);
+        } catch (IOException e) {
+            throw new IOException(String.format("Cannot resolve %s: %s", path, RetryPolicy.describe(e)), e);
+        }
+        if (expected != null) Files.write(sidecar.toPath(), expected.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+    private boolean verify(File file, String sha1) throws IOException {
+        try {
+            return verifier.verify(file, sha1);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void download(DownloadFileTask task) throws IOException {
+        TaskScheduler.await(TaskScheduler.getDefault().io(task));
+    }
+
+    /* Sidecars hold the hex digest, optionally followed by the file name (sha1sum format) */
+    private static String parseSidecar(String content) {
+        String hash = content.trim().split("\\s+")[0];
+        return hash.matches("[0-9a-fA-F]{40}") ? hash.toLowerCase() : null;
+    }
+
+    private static String readSidecar(File sidecar) {
+        if (!sidecar.isFile()) return null;
+        try {
+            return parseSidecar(new String(Files.readAllBytes(sidecar.toPath()), StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /* A repository without sidecars is not an error, the jar just can't be verified */
+    private static String fetchSidecar(URL url) {
+        try {
+            return parseSidecar(Utils.makeGetRequest(url));
+        } catch (IOException e) {
+            log.debug(String.format("No checksum at %s: %s", url, RetryPolicy.describe(e)));
+            return null;
+        }
+    }
+}
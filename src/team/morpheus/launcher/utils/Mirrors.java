@@ -0,0 +1,103 @@
+package team.morpheus.launcher.utils;
+
+import team.morpheus.launcher.Main;
+import team.morpheus.launcher.logging.MyLogger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/* Ordered base urls for every class of resource, the official one from Main comes first
+ * and the ones configured in mirrors.properties are tried after it, in the given order. Example:
+ *   assets=https://mirror-a.example/assets,https://mirror-b.example/assets
+ *   libraries=https://mirror-a.example/libraries */
+public class Mirrors {
+
+    private static final MyLogger log = new MyLogger(Mirrors.class);
+    private static final Map<ResourceClass, List<String>> configured = new EnumMap<>(ResourceClass.class);
+
+    public enum ResourceClass {
+        ASSETS("assets", Main.getAssetsURL()),
+        LIBRARIES("libraries", Main.getLibrariesURL()),
+        MANIFEST("manifest", origin(Main.getVersionsURL())),
+        FORGE_MAVEN("forge", origin(Main.getForgeInstallerURL()), origin(Main.getForgeVersionsURL())),
+        MORPHEUS_API("morpheus", Main.getMorpheusAPI());
+
+        private final String key;
+        /* official bases, a url starting with one of these belongs to the class */
+        private final List<String> bases;
+
+        ResourceClass(String key, String... bases) {
+            this.key = key;
+            this.bases = Arrays.asList(bases);
+        }
+    }
+
+    /* Reads the user mirrors, a missing file just means no mirrors */
+    public static void load(File file) {
+        configured.clear();
+        if (!file.isFile()) return;
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            log.warn(String.format("Cannot read %s: %s", file.getPath(), e.getMessage()));
+            return;
+        }
+        for (ResourceClass resource : ResourceClass.values()) {
+            String value = properties.getProperty(resource.key);
+            if (value == null || value.trim().isEmpty()) continue;
+            List<String> mirrors = new ArrayList<>();
+            for (String mirror : value.split(",")) {
+                mirror = mirror.trim();
+                while (mirror.endsWith("/")) mirror = mirror.substring(0, mirror.length() - 1);
+                if (!mirror.isEmpty()) mirrors.add(mirror);
+            }
+            configured.put(resource, mirrors);
+            log.info(String.format("Using %s mirror(s) for %s", mirrors.size(), resource.key));
+        }
+    }
+
+    /* The given url followed by the same resource on every configured mirror */
+    public static List<URL> candidates(URL url) {
+        String spec = url.toString();
+        for (ResourceClass resource : ResourceClass.values()) {
+            List<String> mirrors = configured.get(resource);
+            if (mirrors == null) continue;
+            for (String base : resource.bases) {
+                if (!spec.startsWith(base)) continue;
+                String path = spec.substring(base.length());
+                List<URL> candidates = new ArrayList<>();
+                candidates.add(url);
+                for (String mirror : mirrors) {
+                    try {
+                        candidates.add(new URL(mirror + path));
+                    } catch (MalformedURLException e) {
+                        log.warn(String.format("Ignoring invalid mirror %s", mirror));
+                    }
+                }
+                return candidates;
+            }
+        }
+        return Collections.singletonList(url);
+    }
+
+    private static String origin(String url) {
+        try {
+            URL parsed = new URL(url);
+            return String.format("%s://%s", parsed.getProtocol(), parsed.getAuthority());
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
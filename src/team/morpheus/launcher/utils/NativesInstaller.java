@@ -0,0 +1,307 @@
+package team.morpheus.launcher.utils;
+
+import team.morpheus.launcher.logging.MyLogger;
+import team.morpheus.launcher.model.LibraryArtifact;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/* Natives of a version. The archives live in the libraries store like every other artifact, verified by their sha1,
+ * and their binaries are extracted once into a content addressed store shared by every version (cache/natives):
+ * objects/<xx>/<sha1> holds each unique binary, archives/<sha1> lists what an archive extracted to.
+ * The natives folder of a version is only made of links to the store, natives/.natives lists the hashes
+ * of the archives it was assembled from, in order, so an unchanged set costs no read of any archive */
+public class NativesInstaller {
+
+    private static final MyLogger log = new MyLogger(NativesInstaller.class);
+    private static final String MANIFEST = ".natives";
+    /* bumped when the extraction itself changes, so folders and indexes made the old way are redone */
+    private static final String FORMAT = "3";
+    private static final String[] EXTENSIONS = {".dll", ".so", ".dylib", ".jnilib"};
+    /* one buffer per extracting thread, reused for every entry */
+    private static final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[256 * 1024]);
+
+    private final File nativesFolder;
+    private final File objectsFolder;
+    private final File archivesFolder;
+    private final LibraryResolver libraries;
+    private final VerificationIndex verifier;
+    private final List<LibraryArtifact> archives = new ArrayList<>();
+    private final List<List<String>> excludes = new ArrayList<>();
+    private final Set<String> planned = new HashSet<>();
+    /* arm and risc-v machines get their natives from dedicated archives, x86 binaries of mixed archives are useless there */
+    private final boolean skipX86;
+
+    public NativesInstaller(File nativesFolder, File storeFolder, LibraryResolver libraries, VerificationIndex verifier) {
+        this.nativesFolder = nativesFolder;
+        this.objectsFolder = new File(storeFolder, "objects");
+        this.archivesFolder = new File(storeFolder, "archives");
+        this.libraries = libraries;
+        this.verifier = verifier;
+        String arch = OSUtils.getOSArch();
+        this.skipX86 = arch.contains("arm") || arch.contains("aarch") || arch.contains("riscv");
+    }
+
+    /* Queues an archive, path and sha1 may be null for the extra natives that come without them.
+     * exclude holds the extract.exclude prefixes of the json (e.g. META-INF/), may be null */
+    public void add(String path, String url, String sha1, long size, List<String> exclude) throws IOException {
+        if (path == null || path.isEmpty()) path = String.format("morpheus/extra-natives/%s", new File(new URL(url).getPath()).getName());
+        if (planned.add(path)) {
+            archives.add(new LibraryArtifact(null, path, url, sha1, size, null));
+            excludes.add(exclude != null ? exclude : Collections.emptyList());
+        }
+    }
+
+    public void install() throws IOException {
+        if (archives.isEmpty()) return;
+        /* every archive is fetched at once on the io lane */
+        List<File> files = libraries.resolveAll(archives);
+
+        List<String> hashes = new ArrayList<>();
+        StringBuilder manifest = new StringBuilder(String.format("# %s %s\n", FORMAT, skipX86 ? "no-x86" : "all"));
+        for (int i = 0; i < archives.size(); i++) {
+            String sha1 = archives.get(i).getSha1();
+            /* archives without a known hash take it from the verification index, a stat when unchanged */
+            if (sha1 == null) sha1 = hash(files.get(i));
+            if (sha1 == null) throw new FileNotFoundException(String.format("Natives archive %s is missing", files.get(i)));
+            hashes.add(sha1.toLowerCase());
+            manifest.append(sha1.toLowerCase()).append(' ').append(archives.get(i).getPath());
+            if (!excludes.get(i).isEmpty()) manifest.append(' ').append(String.join(",", excludes.get(i)));
+            manifest.append('\n');
+        }
+
+        File manifestFile = new File(nativesFolder, MANIFEST);
+        if (manifestFile.isFile() && manifest.toString().equals(new String(Files.readAllBytes(manifestFile.toPath()), StandardCharsets.UTF_8))) {
+            log.info(String.format("Natives up to date (%s archives)", archives.size()));
+            return;
+        }
+
+        /* each archive is looked up in the store, and extracted into it only the first time any version uses it */
+        List<CompletableFuture<Map<String, String>>> tasks = new ArrayList<>();
+        for (int i = 0; i < archives.size(); i++) {
+            File file = files.get(i);
+            String sha1 = hashes.get(i);
+            List<String> exclude = excludes.get(i);
+            tasks.add(TaskScheduler.getDefault().io(() -> store(file, sha1, exclude)));
+        }
+        TaskScheduler.awaitAll(tasks);
+
+        /* names are flattened, so archives can collide: like the old sequential extraction the later archive wins */
+        Map<String, String> binaries = new LinkedHashMap<>();
+        for (CompletableFuture<Map<String, String>> task : tasks) binaries.putAll(TaskScheduler.await(task));
+
+        /* a different set of archives, start from an empty folder so nothing stale is left behind,
+         * the manifest goes away with it and comes back only once everything is in place */
+        nativesFolder.mkdirs();
+        File[] stale = nativesFolder.listFiles(File::isFile);
+        if (stale != null) for (File file : stale) Files.delete(file.toPath());
+
+        int linked = 0;
+        for (Map.Entry<String, String> binary : binaries.entrySet()) {
+            if (Utils.linkOrCopy(object(binary.getValue()), new File(nativesFolder, binary.getKey()))) linked++;
+        }
+        log.info(String.format("Natives: %s binaries from %s archives, %s linked and %s copied from the store", binaries.size(), archives.size(), linked, binaries.size() - linked));
+
+        File temp = new File(nativesFolder, MANIFEST + ".tmp");
+        Files.write(temp.toPath(), manifest.toString().getBytes(StandardCharsets.UTF_8));
+        move(temp, manifestFile);
+    }
+
+    private String hash(File file) throws IOException {
+        try {
+            return verifier.hash(file);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private File object(String sha1) {
+        return new File(objectsFolder, String.format("%s/%s", sha1.substring(0, 2), sha1));
+    }
+
+    /* Returns the binaries of an archive (flattened name -> sha1), from its store index when all of them are still there */
+    private Map<String, String> store(File archive, String archiveSha1, List<String> exclude) throws IOException {
+        String header = String.format("# %s %s %s", FORMAT, skipX86 ? "no-x86" : "all", String.join(",", exclude));
+        File index = new File(archivesFolder, archiveSha1);
+        Map<String, String> binaries = readIndex(index, header);
+        if (binaries != null) return binaries;
+
+        binaries = extract(archive, exclude);
+        StringBuilder content = new StringBuilder(header).append('\n');
+        for (Map.Entry<String, String> binary : binaries.entrySet()) content.append(binary.getValue()).append(' ').append(binary.getKey()).append('\n');
+        archivesFolder.mkdirs();
+        File temp = File.createTempFile(archiveSha1, ".tmp", archivesFolder);
+        Files.write(temp.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+        move(temp, index);
+        return binaries;
+    }
+
+    private Map<String, String> readIndex(File index, String header) throws IOException {
+        if (!index.isFile()) return null;
+        List<String> lines = Files.readAllLines(index.toPath(), StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(header)) return null;
+
+        Map<String, String> binaries = new LinkedHashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            int space = line.indexOf(' ');
+            if (space < 0) return null;
+            String sha1 = line.substring(0, space);
+            /* a missing or damaged object means the archive has to be extracted again */
+            try {
+                if (!verifier.verify(object(sha1), sha1)) return null;
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+            binaries.put(line.substring(space + 1), sha1);
+        }
+        return binaries;
+    }
+
+    private Map<String, String> extract(File archive, List<String> exclude) throws IOException {
+        Map<String, String> binaries = new LinkedHashMap<>();
+        try (ZipFile zip = open(archive)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!wanted(entry, exclude)) continue;
+                String sha1 = write(zip, entry);
+                if (sha1 != null) binaries.put(flatten(entry), sha1);
+            }
+        }
+        log.info(String.format("Extracted %s natives of %s into the store", binaries.size(), archive.getName()));
+        return binaries;
+    }
+
+    private static ZipFile open(File archive) throws IOException {
+        try {
+            return new ZipFile(archive);
+        } catch (ZipException e) {
+            throw new IOException(String.format("Natives archive %s is not a valid zip: %s", archive, e.getMessage()), e);
+        }
+    }
+
+    private boolean wanted(ZipEntry entry, List<String> exclude) {
+        if (entry.isDirectory()) return false;
+        String name = entry.getName().replace("\\", "/");
+        for (String prefix : exclude) if (name.startsWith(prefix)) return false;
+        if (skipX86 && isX86Path(name)) return false;
+        for (String extension : EXTENSIONS) if (name.endsWith(extension)) return true;
+        return false;
+    }
+
+    private static String flatten(ZipEntry entry) {
+        String name = entry.getName().replace("\\", "/");
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    /* Streams an entry to a temporary file of the store, hashing it on the way, and moves it to its object
+     * once complete and matching its crc. Returns the sha1, or null when the entry turned out to be
+     * an x86 binary on a machine that can't load it */
+    private String write(ZipFile zip, ZipEntry entry) throws IOException {
+        byte[] buffer = buffers.get();
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        objectsFolder.mkdirs();
+        File temp = File.createTempFile("native", ".tmp", objectsFolder);
+        try (InputStream in = zip.getInputStream(entry)) {
+            /* the head is read first, it holds the executable header */
+            int head = 0, length;
+            while (head < buffer.length && (length = in.read(buffer, head, buffer.length - head)) > 0) head += length;
+            if (skipX86 && isX86Binary(buffer, head)) {
+                log.debug(String.format("Skipping x86 binary %s of %s", entry.getName(), zip.getName()));
+                return null;
+            }
+
+            CRC32 crc = new CRC32();
+            try (OutputStream out = new FileOutputStream(temp)) {
+                crc.update(buffer, 0, head);
+                digest.update(buffer, 0, head);
+                out.write(buffer, 0, head);
+                while ((length = in.read(buffer)) > 0) {
+                    crc.update(buffer, 0, length);
+                    digest.update(buffer, 0, length);
+                    out.write(buffer, 0, length);
+                }
+            }
+            if (entry.getCrc() != -1 && crc.getValue() != entry.getCrc()) {
+                throw new IOException(String.format("Corrupted entry %s in %s", entry.getName(), zip.getName()));
+            }
+
+            String sha1 = CryptoEngine.bytesToHex(digest.digest());
+            File object = object(sha1);
+            /* the same binary may come from many archives, the first copy stays while it's still sound,
+             * a damaged one is replaced by the bytes just hashed */
+            if (!verifier.verify(object, sha1)) {
+                object.getParentFile().mkdirs();
+                move(temp, object);
+                verifier.record(object, sha1);
+            }
+            return sha1;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private static void move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /* lwjgl 3 jars keep each architecture in its own folder, e.g. windows/x64/org/lwjgl/lwjgl.dll */
+    private static boolean isX86Path(String name) {
+        for (String part : name.toLowerCase().split("/")) {
+            if (part.equals("x86") || part.equals("x64") || part.equals("x86_64") || part.equals("amd64") || part.equals("i386") || part.equals("i686")) return true;
+        }
+        return false;
+    }
+
+    /* Reads the machine field of elf, pe and mach-o headers; universal mach-o and unknown formats are kept */
+    private static boolean isX86Binary(byte[] head, int length) {
+        if (length >= 20 && head[0] == 0x7f && head[1] == 'E' && head[2] == 'L' && head[3] == 'F') {
+            boolean little = head[5] == 1;
+            int machine = little ? (head[18] & 0xff) | (head[19] & 0xff) << 8 : (head[18] & 0xff) << 8 | (head[19] & 0xff);
+            return machine == 3 || machine == 62; // EM_386, EM_X86_64
+        }
+        if (length >= 64 && head[0] == 'M' && head[1] == 'Z') {
+            int pe = readIntLE(head, 0x3c);
+            if (pe < 0 || pe + 6 > length || head[pe] != 'P' || head[pe + 1] != 'E' || head[pe + 2] != 0 || head[pe + 3] != 0) return false;
+            int machine = (head[pe + 4] & 0xff) | (head[pe + 5] & 0xff) << 8;
+            return machine == 0x14c || machine == 0x8664; // i386, amd64
+        }
+        if (length >= 8) {
+            int magic = readIntLE(head, 0);
+            int cpu;
+            if (magic == 0xfeedface || magic == 0xfeedfacf) cpu = readIntLE(head, 4);
+            else if (Integer.reverseBytes(magic) == 0xfeedface || Integer.reverseBytes(magic) == 0xfeedfacf) cpu = Integer.reverseBytes(readIntLE(head, 4));
+            else return false;
+            return cpu == 7 || cpu == 0x01000007; // CPU_TYPE_X86, CPU_TYPE_X86_64
+        }
+        return false;
+    }
+
+    private static int readIntLE(byte[] data, int offset) {
+        return (data[offset] & 0xff) | (data[offset + 1] & 0xff) << 8 | (data[offset + 2] & 0xff) << 16 | (data[offset + 3] & 0xff) << 24;
+    }
+}
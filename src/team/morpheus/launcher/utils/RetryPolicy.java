@@ -0,0 +1,111 @@
+package team.morpheus.launcher.utils;
+
+import team.morpheus.launcher.logging.MyLogger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/* Capped exponential backoff with jitter, transient failures (5xx, 429, resets, truncated or corrupted bodies) are retried
+ * and fail over to the next mirror, a permanent failure (e.g. 404, unknown host) drops that mirror for the request */
+public class RetryPolicy {
+
+    private static final MyLogger log = new MyLogger(RetryPolicy.class);
+    private static final RetryPolicy DEFAULT = new RetryPolicy(6, 500, 8000);
+
+    private final int maxAttempts;
+    private final long baseDelay, maxDelay;
+
+    public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    public static RetryPolicy getDefault() {
+        return DEFAULT;
+    }
+
+    /* Every round walks the mirrors in order, switching mirror is immediate and the backoff is only paid between rounds */
+    public <T> T execute(URL url, Call<T> call) throws IOException {
+        List<URL> candidates = new ArrayList<>(Mirrors.candidates(url));
+        IOException last = null;
+        for (int round = 1; round <= maxAttempts; round++) {
+            Iterator<URL> iterator = candidates.iterator();
+            while (iterator.hasNext()) {
+                URL current = iterator.next();
+                try {
+                    return call.run(current);
+                } catch (IOException e) {
+                    last = e;
+                    if (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)) throw e;
+                    /* same answer would come back, only another mirror can help */
+                    if (!isRetryable(e)) iterator.remove();
+                    if (iterator.hasNext()) log.warn(String.format("%s, trying next mirror", describe(e)));
+                }
+            }
+            if (candidates.isEmpty() || round == maxAttempts) break;
+            long delay = delay(round, last);
+            log.warn(String.format("%s, retrying in %sms (%s/%s)", describe(last), delay, round, maxAttempts - 1));
+            sleep(delay);
+        }
+        throw last;
+    }
+
+    public static boolean isRetryable(IOException e) {
+        if (e instanceof HttpStatusException) return isRetryable(((HttpStatusException) e).getStatus());
+        /* an interrupt means the launch is being cancelled, a read timeout is just a slow server */
+        if (e instanceof InterruptedIOException) return e instanceof SocketTimeoutException;
+        /* this host can't be resolved, for the rest of the launch only the other mirrors are worth a try */
+        if (e instanceof UnknownHostException) return false;
+        return true; // reset connections, dns hiccups, truncated or corrupted transfers
+    }
+
+    public static boolean isRetryable(int status) {
+        switch (status) {
+            case 408: // request timeout
+            case 425: // too early
+            case 429: // too many requests
+            case 500:
+            case 502:
+            case 503:
+            case 504:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public long delay(int attempt, IOException cause) {
+        if (cause instanceof HttpStatusException && ((HttpStatusException) cause).getRetryAfter() >= 0) {
+            return Math.min(maxDelay, ((HttpStatusException) cause).getRetryAfter() * 1000);
+        }
+        long ceiling = Math.min(maxDelay, baseDelay << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    /* Some network exceptions come without a message */
+    public static String describe(Throwable e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    public static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    public interface Call<T> {
+
+        T run(URL url) throws IOException;
+    }
+}
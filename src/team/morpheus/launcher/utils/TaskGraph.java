@@ -0,0 +1,104 @@
+package team.morpheus.launcher.utils;
+
+import team.morpheus.launcher.logging.MyLogger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/* Small dependency graph on top of the TaskScheduler, each node starts as soon as all its dependencies completed.
+ * A failed node fails its dependents without running them, await() reports the first failure once everything settled */
+public class TaskGraph {
+
+    private static final MyLogger log = new MyLogger(TaskGraph.class);
+
+    private final String name;
+    private final TaskScheduler scheduler;
+    private final List<Node<?>> nodes = new ArrayList<>();
+    private final long created = System.currentTimeMillis();
+
+    public TaskGraph(String name) {
+        this(name, TaskScheduler.getDefault());
+    }
+
+    public TaskGraph(String name, TaskScheduler scheduler) {
+        this.name = name;
+        this.scheduler = scheduler;
+    }
+
+    /* Blocking work (network, disk), runs on the io lane */
+    public <T> Node<T> io(String name, Callable<T> work, Node<?>... dependencies) {
+        return add(name, false, work, dependencies);
+    }
+
+    /* Pure computation, runs on the cpu lane */
+    public <T> Node<T> cpu(String name, Callable<T> work, Node<?>... dependencies) {
+        return add(name, true, work, dependencies);
+    }
+
+    private synchronized <T> Node<T> add(String name, boolean cpu, Callable<T> work, Node<?>... dependencies) {
+        CompletableFuture<?>[] before = new CompletableFuture<?>[dependencies.length];
+        for (int i = 0; i < dependencies.length; i++) before[i] = dependencies[i].future;
+
+        Node<T> node = new Node<>(name);
+        Callable<T> timed = () -> {
+            node.start = System.currentTimeMillis();
+            try {
+                return work.call();
+            } finally {
+                node.end = System.currentTimeMillis();
+            }
+        };
+        node.future = CompletableFuture.allOf(before).thenCompose(v -> cpu ? scheduler.cpu(timed) : scheduler.io(timed));
+        nodes.add(node);
+        return node;
+    }
+
+    /* Waits for every node, then logs how long each phase took against the wall clock */
+    public void await() throws IOException {
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        synchronized (this) {
+            for (Node<?> node : nodes) futures.add(node.future);
+        }
+        try {
+            TaskScheduler.awaitAll(futures);
+        } finally {
+            report();
+        }
+    }
+
+    private synchronized void report() {
+        long wall = System.currentTimeMillis() - created, sum = 0;
+        for (Node<?> node : nodes) {
+            if (node.end == 0) {
+                log.debug(String.format("  %s: skipped", node.name));
+                continue;
+            }
+            sum += node.end - node.start;
+            log.debug(String.format("  %s: %sms (started at +%sms)", node.name, node.end - node.start, node.start - created));
+        }
+        log.info(String.format("%s finished in %sms, phases took %sms in total", name, wall, sum));
+    }
+
+    public static class Node<T> {
+
+        private final String name;
+        private CompletableFuture<T> future;
+        private volatile long start, end;
+
+        private Node(String name) {
+            this.name = name;
+        }
+
+        /* Result of the node, rethrows its failure; meant to be called by dependents, when it is already completed */
+        public T get() throws IOException {
+            return TaskScheduler.await(future);
+        }
+
+        public CompletableFuture<T> future() {
+            return future;
+        }
+    }
+}
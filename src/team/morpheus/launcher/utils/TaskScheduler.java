@@ -0,0 +1,173 @@
+package team.morpheus.launcher.utils;
+
+import team.morpheus.launcher.logging.MyLogger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Launcher wide scheduler, threads are created once and reused by every phase of the launch.
+ * The io lane runs downloads and file work (its size is the download upper bound), the cpu lane hashing and parsing.
+ * Tasks are CompletableFutures: callbacks can be chained, cancel() interrupts a running task and failures reach whoever waits */
+public class TaskScheduler {
+
+    private static final MyLogger log = new MyLogger(TaskScheduler.class);
+    private static volatile TaskScheduler instance;
+
+    private final ThreadPoolExecutor io, cpu;
+
+    public TaskScheduler(int ioThreads) {
+        this.io = lane("io", Math.max(1, ioThreads));
+        this.cpu = lane("cpu", Runtime.getRuntime().availableProcessors());
+    }
+
+    public static TaskScheduler getDefault() {
+        if (instance == null) {
+            synchronized (TaskScheduler.class) {
+                if (instance == null) instance = new TaskScheduler(16);
+            }
+        }
+        return instance;
+    }
+
+    /* The previous scheduler keeps running what it already accepted, its idle threads just time out */
+    public static void setDefault(TaskScheduler scheduler) {
+        instance = scheduler;
+    }
+
+    public <T> CompletableFuture<T> io(Callable<T> task) {
+        return submit(io, task);
+    }
+
+    public <T> CompletableFuture<T> cpu(Callable<T> task) {
+        return submit(cpu, task);
+    }
+
+    /* Waits for the task, rethrowing its own exception instead of an ExecutionException.
+     * A task still queued is run by the waiting thread, so tasks waiting on other tasks of the same lane can't deadlock */
+    public static <T> T await(Future<T> future) throws IOException {
+        if (future instanceof Task) ((Task<?>) future).runInline();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a task");
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("Task was cancelled");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /* Waits for every task even when some fail, then rethrows the first failure with the others attached as suppressed.
+     * Tasks depending on a failed one fail with its very exception, each failure is reported once */
+    public static void awaitAll(Collection<? extends Future<?>> futures) throws IOException {
+        IOException failure = null;
+        Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        int failed = 0;
+        for (Future<?> future : futures) {
+            try {
+                await(future);
+            } catch (InterruptedIOException e) {
+                for (Future<?> other : futures) other.cancel(true);
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                if (!seen.add(e)) continue;
+                failed++;
+                if (failure == null) failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                else failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) {
+            if (failed > 1) log.error(String.format("%s of %s tasks failed", failed, futures.size()));
+            throw failure;
+        }
+    }
+
+    private static <T> Task<T> submit(ThreadPoolExecutor lane, Callable<T> callable) {
+        Task<T> task = new Task<>(lane, callable);
+        lane.execute(task);
+        return task;
+    }
+
+    private static ThreadPoolExecutor lane(String name, int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            /* daemon, an idle launcher thread must never keep the game jvm alive */
+            Thread thread = new Thread(runnable, String.format("morpheus-%s-%s", name, counter.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static class Task<T> extends CompletableFuture<T> implements Runnable {
+
+        private final ThreadPoolExecutor lane;
+        private final Callable<T> callable;
+        /* runner is set, cleared and interrupted only under this lock, a cancel can't reach a thread that moved on */
+        private final Object lock = new Object();
+        private Thread runner;
+        private boolean interrupted;
+
+        Task(ThreadPoolExecutor lane, Callable<T> callable) {
+            this.lane = lane;
+            this.callable = callable;
+        }
+
+        @Override
+        public void run() {
+            Thread thread = Thread.currentThread();
+            boolean wasInterrupted = thread.isInterrupted();
+            synchronized (lock) {
+                if (isDone()) return; // cancelled while queued, or already run by a waiting thread
+                runner = thread;
+            }
+            try {
+                complete(callable.call());
+            } catch (Throwable e) {
+                completeExceptionally(e);
+            } finally {
+                /* the interrupt of a cancel is for this task only, not for the next task of a pooled thread
+                 * nor for the waiting thread that ran it inline */
+                synchronized (lock) {
+                    runner = null;
+                    if (interrupted && !wasInterrupted) Thread.interrupted();
+                }
+            }
+        }
+
+        /* Takes the task out of the queue and runs it here, false when a worker already picked it up */
+        void runInline() {
+            if (!isDone() && lane.remove(this)) run();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                lane.remove(this);
+                if (mayInterruptIfRunning) {
+                    synchronized (lock) {
+                        if (runner != null) {
+                            interrupted = true;
+                            runner.interrupt();
+                        }
+                    }
+                }
+            }
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package team.morpheus.launcher.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+
+/* Java 8 transport, HttpURLConnection already keeps idle sockets in a per host cache,
+ * they are only reused when the body is read to the end, so responses drain what's left on close */
+public class UrlConnectionTransport extends HttpTransport {
+
+    private static final int DRAIN_LIMIT = 65536;
+
+    public UrlConnectionTransport(int maxConnections) {
+        /* the keep-alive cache reads these once, default is 5 idle sockets per host which is less than the download pool */
+        if (System.getProperty("http.maxConnections") == null) System.setProperty("http.maxConnections", String.valueOf(Math.max(5, maxConnections)));
+        if (System.getProperty("http.keepAlive") == null) System.setProperty("http.keepAlive", "true");
+    }
+
+    @Override
+    protected HttpResponse request(String method, URL url, Map<String, String> headers) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        connection.setUseCaches(false);
+        connection.setRequestProperty("User-Agent", getUserAgent());
+        for (Map.Entry<String, String> header : headers.entrySet()) connection.setRequestProperty(header.getKey(), header.getValue());
+
+        int status = connection.getResponseCode();
+        InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        return new HttpResponse(status, connection.getHeaderFields(), body == null ? null : new DrainingInputStream(body));
+    }
+
+    private static class DrainingInputStream extends FilterInputStream {
+
+        DrainingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                /* small leftovers are cheaper to read than a new tcp/tls handshake */
+                byte[] skip = new byte[8192];
+                int drained = 0, read;
+                while (drained < DRAIN_LIMIT && (read = in.read(skip)) != -1) drained += read;
+            } catch (IOException ignored) {
+            } finally {
+                super.close();
+            }
+        }
+    }
+}
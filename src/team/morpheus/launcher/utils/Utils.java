@@ -1,21 +1,25 @@
 package team.morpheus.launcher.utils;
 
-import team.morpheus.launcher.Main;
-import team.morpheus.launcher.logging.MyLogger;
+import com.google.gson.Gson;
 
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 
 public class Utils {
 
+    private static final Gson gson = new Gson();
+
     public static <T> T[] concat(T[] first, T[] second) {
         T[] result = Arrays.copyOf(first, first.length + second.length);
         System.arraycopy(second, 0, result, first.length, second.length);
@@ -51,21 +55,48 @@ public class Utils {
     }
 
     public static String makeGetRequest(URL url) throws IOException {
-        HttpURLConnection httpurlconnection = (HttpURLConnection) url.openConnection();
-        httpurlconnection.setRequestMethod("GET");
-        httpurlconnection.setRequestProperty("User-Agent", String.format("Morpheus Launcher (%s)", Main.build));
-        httpurlconnection.setUseCaches(false);
-        BufferedReader bufferedreader = new BufferedReader(new InputStreamReader(httpurlconnection.getInputStream()));
-        StringBuilder stringbuilder = new StringBuilder();
-        String s;
+        return makeGetRequest(url, RetryPolicy.getDefault());
+    }
+
+    /* Metadata request, answered through the HttpCache when the launcher set one */
+    public static String makeGetRequest(URL url, RetryPolicy retryPolicy) throws IOException {
+        HttpCache cache = HttpCache.getDefault();
+        if (cache != null) return new String(Files.readAllBytes(cache.get(url, retryPolicy).toPath()), StandardCharsets.UTF_8);
+        return retryPolicy.execute(url, source -> {
+            try (HttpResponse response = HttpTransport.getDefault().get(source)) {
+                if (!response.isSuccessful()) throw new HttpStatusException(source, response);
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int length;
+                while ((length = response.getBody().read(buffer)) != -1) body.write(buffer, 0, length);
+                return new String(body.toByteArray(), StandardCharsets.UTF_8);
+            }
+        });
+    }
 
-        while ((s = bufferedreader.readLine()) != null) {
-            stringbuilder.append(s);
-            stringbuilder.append('\r');
+    /* Same as above but the body ends up in target, so it can be parsed as a stream instead of a string */
+    public static void makeGetRequest(URL url, File target, RetryPolicy retryPolicy) throws IOException {
+        HttpCache cache = HttpCache.getDefault();
+        if (cache != null) {
+            linkOrCopy(cache.get(url, retryPolicy), target);
+            return;
         }
+        File parent = target.getParentFile();
+        if (parent != null) parent.mkdirs();
+        retryPolicy.execute(url, source -> {
+            try (HttpResponse response = HttpTransport.getDefault().get(source)) {
+                if (!response.isSuccessful()) throw new HttpStatusException(source, response);
+                File temp = new File(target.getPath() + ".tmp");
+                Files.copy(response.getBody(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                return null;
+            }
+        });
+    }
 
-        bufferedreader.close();
-        return stringbuilder.toString();
+    /* Gson is thread safe and caches its type adapters, one instance serves every json of the launch */
+    public static Gson getGson() {
+        return gson;
     }
 
     private static String getDataString(HashMap<String, String> params) throws UnsupportedEncodingException {
@@ -81,34 +112,36 @@ public class Utils {
         return result.toString();
     }
 
-    public static void downloadAndUnzipNatives(URL source, File targetPath, MyLogger log) {
+    /* A truncated jar has no central directory, so opening it is a cheap integrity check */
+    public static boolean isValidZip(File file) {
+        if (!file.isFile()) return false;
         try {
-            ZipInputStream zipInputStream = new ZipInputStream(source.openStream());
-            ZipEntry zipEntry = zipInputStream.getNextEntry();
-            while (zipEntry != null) {
-                if (!zipEntry.isDirectory()) {
-                    String fileName = zipEntry.getName().replace("\\", "/");
-                    String[] fileSplit = fileName.split("/");
-                    File newFile = new File(targetPath.getPath(), fileSplit[Math.max(0, fileSplit.length - 1)]);
+            new ZipFile(file).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
 
-                    boolean isNativeFile = newFile.getPath().endsWith(".dll") || newFile.getPath().endsWith(".dylib") || newFile.getPath().endsWith(".jnilib") || newFile.getPath().endsWith(".so");
-                    if (isNativeFile) {
-                        FileOutputStream fileOutputStream = new FileOutputStream(newFile);
-                        byte[] buffer = new byte[1024];
-                        int length;
-                        while ((length = zipInputStream.read(buffer)) > 0) {
-                            fileOutputStream.write(buffer, 0, length);
-                        }
-                        fileOutputStream.close();
-                    }
-                }
-                zipEntry = zipInputStream.getNextEntry();
-            }
-            zipInputStream.closeEntry();
-            zipInputStream.close();
-        } catch (Exception e) {
-            log.error(e.getMessage());
-            e.printStackTrace();
+    /* Makes target point to the same bytes of source, with a hard link when the filesystem allows it,
+     * otherwise with a channel copy that lets the kernel move the data. Returns true when linked */
+    public static boolean linkOrCopy(File source, File target) throws IOException {
+        File parent = target.getParentFile();
+        if (parent != null) parent.mkdirs();
+        Files.deleteIfExists(target.toPath());
+        try {
+            Files.createLink(target.toPath(), source.toPath());
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            /* different volume, FAT or a filesystem without links */
+        }
+        File temp = new File(target.getPath() + ".tmp");
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size(), position = 0;
+            while (position < size) position += in.transferTo(position, size - position, out);
         }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return false;
     }
 }
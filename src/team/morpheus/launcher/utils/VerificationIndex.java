@@ -0,0 +1,144 @@
+package team.morpheus.launcher.utils;
+
+import team.morpheus.launcher.logging.MyLogger;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Remembers the sha1 of every file already checked, together with its stat data (size, mtime, inode).
+ * When the stat data still matches the file is trusted without reading it again */
+public class VerificationIndex {
+
+    private static final MyLogger log = new MyLogger(VerificationIndex.class);
+    private static final int MAGIC = 0x4D564931; // "MVI1"
+
+    private final File indexFile;
+    private final boolean reverify;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger trusted = new AtomicInteger(), hashed = new AtomicInteger();
+    private volatile boolean dirty;
+
+    /* reverify ignores every stored entry, so each file gets hashed again and the index rebuilt */
+    public VerificationIndex(File indexFile, boolean reverify) {
+        this.indexFile = indexFile;
+        this.reverify = reverify;
+        if (!reverify) load();
+    }
+
+    /* Returns true when the file exists and its sha1 matches the expected one */
+    public boolean verify(File file, String sha1) throws IOException, NoSuchAlgorithmException {
+        if (sha1 == null) return file.isFile();
+        String actual = hash(file);
+        return actual != null && actual.equalsIgnoreCase(sha1);
+    }
+
+    /* Returns the sha1 of the file, from the index when its stat data is unchanged, null if the file is missing */
+    public String hash(File file) throws IOException, NoSuchAlgorithmException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+        if (!attrs.isRegularFile()) return null;
+
+        String key = file.getAbsolutePath();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.matches(attrs)) {
+            trusted.incrementAndGet();
+            return entry.sha1;
+        }
+
+        String sha1 = CryptoEngine.fileHash(file, "SHA-1");
+        hashed.incrementAndGet();
+        entries.put(key, new Entry(attrs, sha1));
+        dirty = true;
+        return sha1;
+    }
+
+    /* Stores an already known sha1 for a file that has just been written (e.g. hashed while downloading) */
+    public void record(File file, String sha1) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        entries.put(file.getAbsolutePath(), new Entry(attrs, sha1.toLowerCase()));
+        dirty = true;
+    }
+
+    public void save() {
+        log.info(String.format("Verified files: %s trusted from index, %s hashed%s", trusted.get(), hashed.get(), reverify ? " (full re-verify)" : ""));
+        if (!dirty) return;
+
+        File parent = indexFile.getParentFile();
+        if (parent != null) parent.mkdirs();
+        File temp = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(entry.size);
+                out.writeLong(entry.mtime);
+                out.writeUTF(entry.inode);
+                out.writeUTF(entry.sha1);
+            }
+        } catch (IOException e) {
+            log.warn(String.format("Cannot write verification index: %s", e.getMessage()));
+            return;
+        }
+        try {
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            log.warn(String.format("Cannot write verification index: %s", e.getMessage()));
+        }
+    }
+
+    private void load() {
+        if (!indexFile.isFile()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC) throw new IOException("bad magic");
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                entries.put(key, new Entry(in.readLong(), in.readLong(), in.readUTF(), in.readUTF()));
+            }
+        } catch (IOException e) {
+            /* a broken index only costs a rehash, start from scratch */
+            log.warn(String.format("Discarding verification index: %s", e.getMessage()));
+            entries.clear();
+        }
+    }
+
+    private static String inodeOf(BasicFileAttributes attrs) {
+        /* fileKey is (dev, inode) on unix filesystems, null where the platform doesn't expose it */
+        Object key = attrs.fileKey();
+        return key != null ? key.toString() : "";
+    }
+
+    private static class Entry {
+
+        final long size, mtime;
+        final String inode, sha1;
+
+        Entry(long size, long mtime, String inode, String sha1) {
+            this.size = size;
+            this.mtime = mtime;
+            this.inode = inode;
+            this.sha1 = sha1;
+        }
+
+        Entry(BasicFileAttributes attrs, String sha1) {
+            this(attrs.size(), attrs.lastModifiedTime().toMillis(), inodeOf(attrs), sha1);
+        }
+
+        boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size() && mtime == attrs.lastModifiedTime().toMillis() && inode.equals(inodeOf(attrs));
+        }
+    }
+}
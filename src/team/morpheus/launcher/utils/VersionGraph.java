@@ -0,0 +1,185 @@
+package team.morpheus.launcher.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import team.morpheus.launcher.logging.MyLogger;
+import team.morpheus.launcher.model.MavenCoordinate;
+import team.morpheus.launcher.model.products.MojangProduct;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* Resolves the whole inheritsFrom chain of a version, e.g. optiforge -> forge -> vanilla.
+ * Each parent json is fetched on the io lane as soon as its child names it, every json is parsed once
+ * while its file doesn't change and the merged chain is memoized, so versions sharing a parent share its work.
+ * There is one graph per versions folder, it lives as long as the launcher jvm */
+public class VersionGraph {
+
+    private static final MyLogger log = new MyLogger(VersionGraph.class);
+    /* deeper than any real modloader stack, a longer chain is a broken json */
+    private static final int MAX_DEPTH = 8;
+    private static final Map<File, VersionGraph> graphs = new ConcurrentHashMap<>();
+
+    private final Map<String, Parsed> jsons = new ConcurrentHashMap<>();
+    private final Map<String, Chain> chains = new ConcurrentHashMap<>();
+    /* parents being fetched right now, two chains asking for the same one wait for the same task */
+    private final Map<String, CompletableFuture<MojangProduct.Game>> fetching = new ConcurrentHashMap<>();
+
+    public static VersionGraph of(File versionsFolder) {
+        return graphs.computeIfAbsent(versionsFolder.getAbsoluteFile(), folder -> new VersionGraph());
+    }
+
+    /* Parsed json, from memory when the file didn't change since the last time */
+    public MojangProduct.Game load(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        long size = file.length(), lastModified = file.lastModified();
+        Parsed parsed = jsons.get(path);
+        if (parsed != null && parsed.size == size && parsed.lastModified == lastModified) return parsed.game;
+
+        MojangProduct.Game game;
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            game = Utils.getGson().fromJson(reader, MojangProduct.Game.class);
+        }
+        if (game == null) throw new IOException(String.format("Empty version json %s", file.getPath()));
+        jsons.put(path, new Parsed(size, lastModified, game));
+        return game;
+    }
+
+    /* Walks the chain from the launched version up to the one that doesn't inherit, fetcher makes each parent json available */
+    public Chain resolve(MojangProduct.Game game, Fetcher fetcher) throws IOException {
+        List<MojangProduct.Game> levels = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        levels.add(game);
+        seen.add(String.valueOf(game.id).toLowerCase());
+
+        MojangProduct.Game current = game;
+        while (current.inheritsFrom != null) {
+            String parent = current.inheritsFrom;
+            if (!seen.add(parent.toLowerCase())) throw new IOException(String.format("Cyclic inheritsFrom: %s inherits from %s again", current.id, parent));
+            if (levels.size() >= MAX_DEPTH) throw new IOException(String.format("inheritsFrom chain of %s is deeper than %s", game.id, MAX_DEPTH));
+            current = fetch(parent, fetcher);
+            levels.add(current);
+        }
+
+        /* the same jsons give the same merge, unchanged files give back the same Game instances from the parse memo */
+        StringBuilder key = new StringBuilder();
+        for (MojangProduct.Game level : levels) key.append(level.id).append('>');
+        Chain chain = chains.get(key.toString());
+        if (chain == null || !chain.isMadeOf(levels)) {
+            chain = new Chain(levels);
+            chains.put(key.toString(), chain);
+            if (levels.size() > 2) log.info(String.format("Resolved inheritsFrom chain %s", chain));
+        }
+        return chain;
+    }
+
+    private MojangProduct.Game fetch(String id, Fetcher fetcher) throws IOException {
+        String key = id.toLowerCase();
+        CompletableFuture<MojangProduct.Game> task = fetching.computeIfAbsent(key, k -> TaskScheduler.getDefault().io(() -> load(fetcher.fetch(id))));
+        try {
+            return TaskScheduler.await(task);
+        } finally {
+            fetching.remove(key, task);
+        }
+    }
+
+    public interface Fetcher {
+
+        /* Downloads or installs the json of the version when needed and returns its file */
+        File fetch(String id) throws Exception;
+    }
+
+    @AllArgsConstructor
+    private static class Parsed {
+
+        private final long size, lastModified;
+        private final MojangProduct.Game game;
+    }
+
+    /* The merged view of a chain. The nearest level to the launched version wins:
+     * mainClass is the first one found walking up, a library of an intermediate level is dropped when a nearer level has
+     * the same artifact (the vanilla ones are merged later by the ClasspathModel, where the modloader wins as well),
+     * arguments are applied from the root down so the launched version comes last */
+    @Getter
+    public static class Chain {
+
+        /* launched version first, the one that doesn't inherit last */
+        private final List<MojangProduct.Game> levels;
+        private final String mainClass;
+        /* libraries of the levels between the launched version and the root */
+        private final List<MojangProduct.Game.Library> intermediateLibraries;
+
+        private Chain(List<MojangProduct.Game> levels) {
+            this.levels = Collections.unmodifiableList(new ArrayList<>(levels));
+
+            String mainClass = null;
+            for (MojangProduct.Game level : levels) {
+                if (level.mainClass != null) {
+                    mainClass = level.mainClass;
+                    break;
+                }
+            }
+            this.mainClass = mainClass;
+
+            List<MojangProduct.Game.Library> intermediate = new ArrayList<>();
+            Set<String> provided = new HashSet<>();
+            for (int i = 0; i < levels.size() - 1; i++) {
+                MojangProduct.Game level = levels.get(i);
+                if (level.libraries == null) continue;
+                Set<String> own = new HashSet<>();
+                for (MojangProduct.Game.Library library : level.libraries) {
+                    String key = key(library);
+                    if (i > 0 && !provided.contains(key)) intermediate.add(library);
+                    own.add(key);
+                }
+                provided.addAll(own);
+            }
+            this.intermediateLibraries = intermediate;
+        }
+
+        public MojangProduct.Game getGame() {
+            return levels.get(0);
+        }
+
+        /* the vanilla version, the launched one itself when it doesn't inherit */
+        public MojangProduct.Game getRoot() {
+            return levels.get(levels.size() - 1);
+        }
+
+        /* null when the launched version doesn't inherit */
+        public MojangProduct.Game getInherited() {
+            return levels.size() > 1 ? getRoot() : null;
+        }
+
+        /* Levels above the root in the order their arguments are applied, the launched version last */
+        public List<MojangProduct.Game> getModloaders() {
+            List<MojangProduct.Game> modloaders = new ArrayList<>(levels.subList(0, levels.size() - 1));
+            Collections.reverse(modloaders);
+            return modloaders;
+        }
+
+        private boolean isMadeOf(List<MojangProduct.Game> others) {
+            if (others.size() != levels.size()) return false;
+            for (int i = 0; i < levels.size(); i++) if (others.get(i) != levels.get(i)) return false;
+            return true;
+        }
+
+        private static String key(MojangProduct.Game.Library library) {
+            try {
+                return MavenCoordinate.parse(library.name).getKey();
+            } catch (IllegalArgumentException e) {
+                return library.name;
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder chain = new StringBuilder();
+            for (MojangProduct.Game level : levels) chain.append(chain.length() > 0 ? " -> " : "").append(level.id);
+            return chain.toString();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package team.morpheus.launcher.utils;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import team.morpheus.launcher.logging.MyLogger;
+import team.morpheus.launcher.model.products.MojangProduct;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/* Mojang versions list, kept in cache/version_manifest.json and indexed by id ignoring the case.
+ * A copy younger than the TTL is used without touching the network, an older one gets refreshed and,
+ * when mojang can't be reached, is still used as it is so launching works offline */
+public class VersionManifest {
+
+    private static final MyLogger log = new MyLogger(VersionManifest.class);
+    public static final long TTL = TimeUnit.HOURS.toMillis(1);
+
+    private final File cacheFile;
+    private final String url;
+    private volatile MojangProduct.Latest latest;
+    private volatile Map<String, MojangProduct.Version> index;
+    /* true once the list was downloaded during this launch */
+    private volatile boolean refreshed;
+
+    public VersionManifest(File cacheFile, String url) {
+        this.cacheFile = cacheFile;
+        this.url = url;
+    }
+
+    /* Throws only when the list is neither downloadable nor cached */
+    public synchronized void load() throws IOException {
+        boolean expired = System.currentTimeMillis() - cacheFile.lastModified() > TTL;
+        if (cacheFile.isFile() && !expired && read()) return;
+
+        try {
+            refresh();
+        } catch (IOException e) {
+            if (!read()) throw e;
+            log.warn(String.format("Cannot refresh mojang versions list (%s), using the cached one", RetryPolicy.describe(e)));
+        }
+    }
+
+    /* Id of the version an alias points to, other names are returned as they are */
+    public String resolve(String name) {
+        MojangProduct.Latest aliases = latest;
+        if (aliases == null) return name;
+        if (name.equalsIgnoreCase("latest")) return aliases.release;
+        if (name.equalsIgnoreCase("snapshot")) return aliases.snapshot;
+        return name;
+    }
+
+    public boolean isAlias(String name) {
+        return name.equalsIgnoreCase("latest") || name.equalsIgnoreCase("snapshot");
+    }
+
+    /* Search a version by id (or alias), null when unknown */
+    public MojangProduct.Version find(String name) {
+        Map<String, MojangProduct.Version> versions = index;
+        return versions != null && name != null ? versions.get(resolve(name).toLowerCase()) : null;
+    }
+
+    /* Like find, but a miss on a cached list downloads it again once, the version may be newer than the copy */
+    public MojangProduct.Version findOrRefresh(String name) {
+        MojangProduct.Version version = find(name);
+        if (version != null || refreshed) return version;
+        synchronized (this) {
+            if (!refreshed) {
+                try {
+                    refresh();
+                } catch (IOException e) {
+                    log.warn(String.format("Cannot refresh mojang versions list: %s", RetryPolicy.describe(e)));
+                }
+            }
+        }
+        return find(name);
+    }
+
+    private void refresh() throws IOException {
+        /* with a cached copy to fall back on there's no point in waiting for retries */
+        RetryPolicy retryPolicy = cacheFile.isFile() ? new RetryPolicy(1, 0, 0) : RetryPolicy.getDefault();
+        Utils.makeGetRequest(new URL(url), cacheFile, retryPolicy);
+        /* a 304 leaves the file as it was, the TTL starts again anyway */
+        cacheFile.setLastModified(System.currentTimeMillis());
+        parse();
+        refreshed = true;
+    }
+
+    private boolean read() {
+        if (!cacheFile.isFile()) return false;
+        try {
+            parse();
+            return true;
+        } catch (IOException e) {
+            log.warn(String.format("Cannot read cached versions list: %s", RetryPolicy.describe(e)));
+            return false;
+        }
+    }
+
+    /* Streams the list keeping only what a launch looks up: the latest ids and id, type and url of each version.
+     * Release dates and the rest are skipped without being parsed */
+    private void parse() throws IOException {
+        MojangProduct owner = new MojangProduct();
+        MojangProduct.Latest latest = null;
+        Map<String, MojangProduct.Version> versions = new HashMap<>(2048);
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(cacheFile), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("latest")) {
+                    latest = owner.new Latest();
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String field = reader.nextName();
+                        if (field.equals("release")) latest.release = nextString(reader);
+                        else if (field.equals("snapshot")) latest.snapshot = nextString(reader);
+                        else reader.skipValue();
+                    }
+                    reader.endObject();
+                } else if (name.equals("versions")) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        MojangProduct.Version version = owner.new Version();
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            String field = reader.nextName();
+                            if (field.equals("id")) version.id = nextString(reader);
+                            else if (field.equals("type")) version.type = nextString(reader);
+                            else if (field.equals("url")) version.url = nextString(reader);
+                            else reader.skipValue();
+                        }
+                        reader.endObject();
+                        /* first one wins, like the linear search did */
+                        if (version.id != null) versions.putIfAbsent(version.id.toLowerCase(), version);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed versions list", e);
+        }
+        this.latest = latest;
+        this.index = versions;
+    }
+
+    private static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.NULL) return reader.nextString();
+        reader.nextNull();
+        return null;
+    }
+}
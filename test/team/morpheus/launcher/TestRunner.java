@@ -0,0 +1,83 @@
+package team.morpheus.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/* Tiny runner for the behavior tests, the launcher ships no test framework and lib/ only holds runtime jars.
+ * Every public void method named test* of the given classes runs on a fresh instance, the exit code is the failures.
+ * From the project folder, after compiling src and test together into out:
+ * java -cp "out:lib/*" team.morpheus.launcher.TestRunner team.morpheus.launcher.utils.RetryPolicyTest ... */
+public class TestRunner {
+
+    public static void main(String[] args) throws Exception {
+        int passed = 0, failed = 0;
+        for (String name : args) {
+            Class<?> clazz = Class.forName(name);
+            Method[] methods = clazz.getMethods();
+            Arrays.sort(methods, Comparator.comparing(Method::getName));
+            for (Method method : methods) {
+                if (!method.getName().startsWith("test") || method.getParameterCount() > 0 || Modifier.isStatic(method.getModifiers())) continue;
+                String test = String.format("%s.%s", clazz.getSimpleName(), method.getName());
+                try {
+                    method.invoke(clazz.getDeclaredConstructor().newInstance());
+                    System.out.println(String.format("PASS %s", test));
+                    passed++;
+                } catch (InvocationTargetException e) {
+                    System.out.println(String.format("FAIL %s: %s", test, e.getCause()));
+                    e.getCause().printStackTrace(System.out);
+                    failed++;
+                }
+            }
+        }
+        System.out.println(String.format("%s passed, %s failed", passed, failed));
+        System.exit(failed > 0 ? 1 : 0);
+    }
+
+    public static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+
+    public static void checkEquals(Object expected, Object actual) {
+        if (!Objects.equals(expected, actual)) throw new AssertionError(String.format("expected <%s> but was <%s>", expected, actual));
+    }
+
+    public static <T extends Throwable> T checkThrows(Class<T> type, Action action) {
+        try {
+            action.run();
+        } catch (Throwable t) {
+            if (type.isInstance(t)) return type.cast(t);
+            throw new AssertionError(String.format("expected %s but got %s", type.getSimpleName(), t), t);
+        }
+        throw new AssertionError(String.format("expected %s but nothing was thrown", type.getSimpleName()));
+    }
+
+    /* Empty folder removed with everything in it by deleteTree */
+    public static File tempFolder() throws IOException {
+        return Files.createTempDirectory("morpheus-test").toFile();
+    }
+
+    public static void deleteTree(File folder) throws IOException {
+        if (!folder.exists()) return;
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(folder.toPath())) {
+            walk.forEach(paths::add);
+        }
+        for (int i = paths.size() - 1; i >= 0; i--) Files.deleteIfExists(paths.get(i));
+    }
+
+    public interface Action {
+
+        void run() throws Exception;
+    }
+}
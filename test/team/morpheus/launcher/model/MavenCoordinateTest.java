@@ -0,0 +1,58 @@
+package team.morpheus.launcher.model;
+
+import static team.morpheus.launcher.TestRunner.*;
+
+public class MavenCoordinateTest {
+
+    public void testParse() {
+        MavenCoordinate coordinate = MavenCoordinate.parse("org.lwjgl:lwjgl:3.3.1");
+        checkEquals("org.lwjgl", coordinate.getGroup());
+        checkEquals("lwjgl", coordinate.getArtifact());
+        checkEquals("3.3.1", coordinate.getVersion());
+        checkEquals(null, coordinate.getClassifier());
+        checkEquals("jar", coordinate.getExtension());
+        checkEquals("org/lwjgl/lwjgl/3.3.1/lwjgl-3.3.1.jar", coordinate.getPath());
+    }
+
+    public void testParseClassifierAndExtension() {
+        MavenCoordinate coordinate = MavenCoordinate.parse("org.lwjgl:lwjgl:3.3.1:natives-linux@zip");
+        checkEquals("natives-linux", coordinate.getClassifier());
+        checkEquals("zip", coordinate.getExtension());
+        checkEquals("org/lwjgl/lwjgl/3.3.1/lwjgl-3.3.1-natives-linux.zip", coordinate.getPath());
+        checkEquals("org.lwjgl:lwjgl:3.3.1:natives-linux@zip", coordinate.toString());
+    }
+
+    public void testParseRejectsOddNames() {
+        checkThrows(IllegalArgumentException.class, () -> MavenCoordinate.parse("org.lwjgl:lwjgl"));
+        checkThrows(IllegalArgumentException.class, () -> MavenCoordinate.parse("a:b:1:c:d@zip"));
+        checkThrows(IllegalArgumentException.class, () -> MavenCoordinate.parse(null));
+    }
+
+    /* the version is not part of the key, two versions of a library conflict */
+    public void testKey() {
+        checkEquals(MavenCoordinate.parse("a.b:c:1.0").getKey(), MavenCoordinate.parse("a.b:c:2.0").getKey());
+        check(!MavenCoordinate.parse("a.b:c:1.0").getKey().equals(MavenCoordinate.parse("a.b:c:1.0:natives").getKey()), "classifier is part of the key");
+    }
+
+    public void testCompareNumbers() {
+        check(MavenCoordinate.compareVersions("1.10", "1.9") > 0, "1.10 > 1.9");
+        check(MavenCoordinate.compareVersions("2.0", "10.0") < 0, "2.0 < 10.0");
+        check(MavenCoordinate.compareVersions("1.0.1", "1.0") > 0, "1.0.1 > 1.0");
+        checkEquals(0, MavenCoordinate.compareVersions("3.3.1", "3.3.1"));
+    }
+
+    public void testMissingComponentsAreZero() {
+        checkEquals(0, MavenCoordinate.compareVersions("1.0", "1.0.0"));
+        checkEquals(0, MavenCoordinate.compareVersions("1.0.0", "1.0"));
+        checkEquals(0, MavenCoordinate.compareVersions("1", "1.0.0"));
+        check(!MavenCoordinate.parse("a:b:1.0.0").isNewerThan(MavenCoordinate.parse("a:b:1.0")), "1.0.0 isn't newer than 1.0");
+    }
+
+    public void testQualifiers() {
+        check(MavenCoordinate.compareVersions("1.0-beta", "1.0") < 0, "1.0-beta < 1.0");
+        check(MavenCoordinate.compareVersions("1.0", "1.0-beta") > 0, "1.0 > 1.0-beta");
+        check(MavenCoordinate.compareVersions("1.0.0", "1.0-beta") > 0, "1.0.0 > 1.0-beta");
+        check(MavenCoordinate.compareVersions("1.0-alpha", "1.0-beta") < 0, "alpha < beta");
+        check(MavenCoordinate.compareVersions("1.0-SNAPSHOT", "1.0.1") < 0, "1.0-SNAPSHOT < 1.0.1");
+    }
+}
@@ -0,0 +1,159 @@
+package team.morpheus.launcher.utils;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import static team.morpheus.launcher.TestRunner.*;
+
+/* Every lookup is made on the indexed loader and on a plain URLClassLoader over the same jars, the answers must match */
+public class IndexedClassLoaderTest {
+
+    /* a package split over two jars, each one having a class of it and both the same resource */
+    public void testSplitPackage() throws Exception {
+        File folder = tempFolder();
+        try {
+            File a = jar(folder, "a.jar", null, false, "p/A.class", source("p", "A", "a"), "p/shared.txt", "from a");
+            File b = jar(folder, "b.jar", null, false, "p/B.class", source("p", "B", "b"), "p/shared.txt", "from b");
+            compare(folder, new File[]{a, b}, new String[]{"p/A.class", "p/B.class", "p/shared.txt", "p/C.class", "q/shared.txt"}, "p.A", "p.B", "p.C");
+        } finally {
+            deleteTree(folder);
+        }
+    }
+
+    /* on java 9+ the versioned class and a resource only under META-INF/versions win, on java 8 the plain ones */
+    public void testMultiReleaseJar() throws Exception {
+        File folder = tempFolder();
+        try {
+            File jar = jar(folder, "mr.jar", manifest("Multi-Release", "true"), true, "m/V.class", source("m", "V", "base"), "META-INF/versions/9/m/V.class", source("m", "V", "nine"),
+                    "META-INF/versions/9/m/only.txt", "nine", "m/plain.txt", "base");
+            compare(folder, new File[]{jar}, new String[]{"m/V.class", "m/only.txt", "m/plain.txt", "m/"}, "m.V");
+        } finally {
+            deleteTree(folder);
+        }
+    }
+
+    /* zip tools often leave out the directory entries, the package must be found all the same */
+    public void testJarWithoutDirectoryEntries() throws Exception {
+        File folder = tempFolder();
+        try {
+            File bare = jar(folder, "bare.jar", null, false, "d/e/F.class", source("d.e", "F", "bare"), "top.txt", "top");
+            File full = jar(folder, "full.jar", null, true, "g/H.class", source("g", "H", "full"));
+            compare(folder, new File[]{bare, full}, new String[]{"d/e/F.class", "d/e/", "d/", "top.txt", "g/H.class", "g/"}, "d.e.F", "g.H");
+        } finally {
+            deleteTree(folder);
+        }
+    }
+
+    /* a class of a sealed package from another jar is refused, as is sealing a package that's already loaded */
+    public void testSealedPackage() throws Exception {
+        File folder = tempFolder();
+        try {
+            File sealed = jar(folder, "sealed.jar", manifest("Sealed", "true"), false, "s/A.class", source("s", "A", "sealed"));
+            File other = jar(folder, "other.jar", null, false, "s/B.class", source("s", "B", "other"));
+            compare(folder, new File[]{sealed, other}, new String[0], "s.A", "s.B");
+            compare(folder, new File[]{sealed, other}, new String[0], "s.B", "s.A");
+        } finally {
+            deleteTree(folder);
+        }
+    }
+
+    private static void compare(File folder, File[] jars, String[] resources, String... classes) throws Exception {
+        URL[] urls = new URL[jars.length];
+        for (int i = 0; i < jars.length; i++) urls[i] = jars[i].toURI().toURL();
+        File index = new File(folder, "index.bin");
+        /* the second indexed loader reads back the index the first one saved */
+        for (int round = 0; round < 2; round++) {
+            try (URLClassLoader expected = new URLClassLoader(urls); IndexedClassLoader actual = new IndexedClassLoader(urls, index)) {
+                for (String name : resources) {
+                    checkEquals(String.valueOf(expected.findResource(name)), String.valueOf(actual.findResource(name)));
+                    checkEquals(list(expected.findResources(name)), list(actual.findResources(name)));
+                }
+                for (String name : classes) checkEquals(load(expected, name), load(actual, name));
+            }
+            check(index.isFile(), "index saved");
+        }
+    }
+
+    /* what a lookup gave, comparable between loaders: the value and the jar of the class, or the failure */
+    private static String load(ClassLoader loader, String name) {
+        try {
+            Class<?> clazz = loader.loadClass(name);
+            return String.format("%s from %s", clazz.getMethod("value").invoke(null), clazz.getProtectionDomain().getCodeSource().getLocation());
+        } catch (ReflectiveOperationException | SecurityException e) {
+            return e.toString();
+        }
+    }
+
+    private static List<String> list(Enumeration<URL> urls) {
+        List<String> names = new ArrayList<>();
+        for (URL url : Collections.list(urls)) names.add(url.toString());
+        return names;
+    }
+
+    /* without a version the attributes of a manifest are ignored */
+    private static Manifest manifest(String name, String value) {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue(name, value);
+        return manifest;
+    }
+
+    private static String source(String pkg, String name, String value) {
+        return String.format("package %s; public class %s { public static String value() { return \"%s\"; } }", pkg, name, value);
+    }
+
+    /* Jar of the given entries, a ".class" entry is given as its source and compiled; directory entries only when asked */
+    private static File jar(File folder, String name, Manifest manifest, boolean directories, String... entries) throws IOException {
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            contents.put(entries[i], entries[i].endsWith(".class") ? compile(folder, entries[i + 1]) : entries[i + 1].getBytes(StandardCharsets.UTF_8));
+        }
+        File file = new File(folder, name);
+        try (JarOutputStream out = manifest != null ? new JarOutputStream(new FileOutputStream(file), manifest) : new JarOutputStream(new FileOutputStream(file))) {
+            List<String> written = new ArrayList<>();
+            for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+                if (directories) {
+                    for (int slash = entry.getKey().indexOf('/'); slash > 0; slash = entry.getKey().indexOf('/', slash + 1)) {
+                        String directory = entry.getKey().substring(0, slash + 1);
+                        if (written.contains(directory)) continue;
+                        out.putNextEntry(new JarEntry(directory));
+                        written.add(directory);
+                    }
+                }
+                out.putNextEntry(new JarEntry(entry.getKey()));
+                out.write(entry.getValue());
+            }
+        }
+        return file;
+    }
+
+    private static byte[] compile(File folder, String source) throws IOException {
+        File sources = Files.createTempDirectory(folder.toPath(), "src").toFile();
+        String pkg = source.substring("package ".length(), source.indexOf(';'));
+        String name = source.substring(source.indexOf("class ") + "class ".length(), source.indexOf(" {"));
+        File file = new File(sources, name + ".java");
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        check(compiler != null, "tests need a JDK");
+        int result = compiler.run(null, null, null, "-nowarn", "-source", "8", "-target", "8", "-d", sources.getPath(), file.getPath());
+        check(result == 0, "compiled " + name);
+        return Files.readAllBytes(new File(sources, pkg.replace('.', '/') + "/" + name + ".class").toPath());
+    }
+}
@@ -0,0 +1,80 @@
+package team.morpheus.launcher.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static team.morpheus.launcher.TestRunner.*;
+
+public class NativesInstallerTest {
+
+    private static final byte[] BINARY = "not really a shared object".getBytes(StandardCharsets.UTF_8);
+    private static final String PATH = "org/lwjgl/lwjgl-natives/1.0/lwjgl-natives-1.0.jar";
+
+    public void testExtractsIntoStoreAndLinks() throws Exception {
+        File root = tempFolder();
+        try {
+            install(root, "1.0");
+            checkBytes(new File(root, "natives-1.0/liblwjgl.so"));
+            check(new File(root, "natives-1.0/.natives").isFile(), "manifest written once the folder is complete");
+        } finally {
+            deleteTree(root);
+        }
+    }
+
+    /* A damaged object must be replaced when its archive is extracted again, not kept and recorded as good */
+    public void testCorruptObjectIsReplaced() throws Exception {
+        File root = tempFolder();
+        try {
+            install(root, "1.0");
+            File object = object(root);
+            check(object.isFile(), "object stored by its sha1");
+
+            /* a folder made of copies keeps the good bytes, the object itself gets damaged */
+            Files.delete(new File(root, "natives-1.0/liblwjgl.so").toPath());
+            Files.write(object.toPath(), "garbage".getBytes(StandardCharsets.UTF_8));
+
+            install(root, "2.0");
+            checkBytes(object);
+            checkBytes(new File(root, "natives-2.0/liblwjgl.so"));
+            checkEquals(CryptoEngine.fileHash(object, "SHA-1"), new VerificationIndex(new File(root, "index"), false).hash(object));
+        } finally {
+            deleteTree(root);
+        }
+    }
+
+    /* Every install uses a fresh index saved to disk, like separate launches */
+    private static void install(File root, String version) throws Exception {
+        File archive = new File(root, "libraries/" + PATH);
+        if (!archive.isFile()) {
+            archive.getParentFile().mkdirs();
+            try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+                zip.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+                zip.write("Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+                zip.putNextEntry(new ZipEntry("liblwjgl.so"));
+                zip.write(BINARY);
+            }
+        }
+        VerificationIndex verifier = new VerificationIndex(new File(root, "index"), false);
+        LibraryResolver libraries = new LibraryResolver(new File(root, "libraries"), verifier);
+        NativesInstaller installer = new NativesInstaller(new File(root, "natives-" + version), new File(root, "store"), libraries, verifier);
+        installer.add(PATH, "", null, 0, null);
+        installer.install();
+        verifier.save();
+    }
+
+    private static File object(File root) throws Exception {
+        String sha1 = CryptoEngine.bytesToHex(MessageDigest.getInstance("SHA-1").digest(BINARY));
+        return new File(root, String.format("store/objects/%s/%s", sha1.substring(0, 2), sha1));
+    }
+
+    private static void checkBytes(File file) throws IOException {
+        check(file.isFile(), file + " exists");
+        checkEquals(new String(BINARY, StandardCharsets.UTF_8), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,99 @@
+package team.morpheus.launcher.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static team.morpheus.launcher.TestRunner.*;
+
+public class RetryPolicyTest {
+
+    private static final String URL = "http://files.example.invalid/a.jar";
+
+    public void testTransientStatusesAreRetried() throws Exception {
+        for (int status : new int[]{408, 425, 429, 500, 502, 503, 504}) check(RetryPolicy.isRetryable(status(status, null)), status + " is transient");
+    }
+
+    public void testPermanentStatusesAreNot() throws Exception {
+        for (int status : new int[]{400, 401, 403, 404, 410, 416}) check(!RetryPolicy.isRetryable(status(status, null)), status + " is permanent");
+    }
+
+    public void testExceptionClassification() {
+        check(RetryPolicy.isRetryable(new SocketTimeoutException("Read timed out")), "a read timeout is a slow server");
+        check(RetryPolicy.isRetryable(new ConnectException("Connection reset")), "a reset connection is transient");
+        check(RetryPolicy.isRetryable(new IOException("Checksum mismatch")), "a corrupted body is transient");
+        check(!RetryPolicy.isRetryable(new InterruptedIOException("cancelled")), "an interrupt is a cancelled launch");
+        check(!RetryPolicy.isRetryable(new UnknownHostException("files.example.invalid")), "an unknown host won't resolve next time");
+    }
+
+    /* the ceiling doubles from the base up to the cap, the jitter keeps every delay in its upper half */
+    public void testBackoffGrowsWithJitterAndCap() {
+        RetryPolicy policy = new RetryPolicy(6, 500, 8000);
+        long[] ceilings = {500, 1000, 2000, 4000, 8000, 8000, 8000};
+        for (int attempt = 1; attempt <= ceilings.length; attempt++) {
+            for (int i = 0; i < 200; i++) {
+                long delay = policy.delay(attempt, new IOException());
+                long ceiling = ceilings[attempt - 1];
+                check(delay >= ceiling / 2 && delay <= ceiling, String.format("attempt %s gave %sms, expected %s-%sms", attempt, delay, ceiling / 2, ceiling));
+            }
+        }
+        /* no overflow for absurd attempt counts */
+        check(policy.delay(1000, new IOException()) <= 8000, "capped");
+    }
+
+    public void testRetryAfterWinsButIsCapped() throws Exception {
+        RetryPolicy policy = new RetryPolicy(6, 500, 8000);
+        checkEquals(3000L, policy.delay(1, status(429, "3")));
+        checkEquals(8000L, policy.delay(1, status(503, "120")));
+    }
+
+    public void testTransientFailuresAreRetriedUntilSuccess() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        String result = new RetryPolicy(4, 1, 2).execute(new URL(URL), url -> {
+            if (calls.incrementAndGet() < 3) throw status(503, null);
+            return "ok";
+        });
+        checkEquals("ok", result);
+        checkEquals(3, calls.get());
+    }
+
+    public void testGivesUpAfterMaxAttempts() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        HttpStatusException e = checkThrows(HttpStatusException.class, () -> new RetryPolicy(3, 1, 2).execute(new URL(URL), url -> {
+            calls.incrementAndGet();
+            throw status(500, null);
+        }));
+        checkEquals(500, e.getStatus());
+        checkEquals(3, calls.get());
+    }
+
+    public void testPermanentFailureIsNotRetried() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        checkThrows(HttpStatusException.class, () -> new RetryPolicy(5, 1, 2).execute(new URL(URL), url -> {
+            calls.incrementAndGet();
+            throw status(404, null);
+        }));
+        checkEquals(1, calls.get());
+    }
+
+    public void testInterruptStopsAtOnce() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        checkThrows(InterruptedIOException.class, () -> new RetryPolicy(5, 1, 2).execute(new URL(URL), url -> {
+            calls.incrementAndGet();
+            throw new InterruptedIOException("cancelled");
+        }));
+        checkEquals(1, calls.get());
+    }
+
+    private static HttpStatusException status(int status, String retryAfter) throws IOException {
+        Map<String, List<String>> headers = retryAfter != null ? Collections.singletonMap("Retry-After", Collections.singletonList(retryAfter)) : Collections.emptyMap();
+        return new HttpStatusException(new URL(URL), new HttpResponse(status, headers, null));
+    }
+}
@@ -0,0 +1,107 @@
+package team.morpheus.launcher.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static team.morpheus.launcher.TestRunner.*;
+
+public class TaskGraphTest {
+
+    private final TaskScheduler scheduler = new TaskScheduler(4);
+
+    public void testDependentsRunAfterTheirDependencies() throws Exception {
+        TaskGraph graph = new TaskGraph("test", scheduler);
+        AtomicInteger order = new AtomicInteger();
+        TaskGraph.Node<Integer> first = graph.io("first", () -> {
+            Thread.sleep(50);
+            return order.incrementAndGet();
+        });
+        TaskGraph.Node<Integer> second = graph.cpu("second", () -> first.get() * 10 + order.incrementAndGet(), first);
+        graph.await();
+        checkEquals(12, second.get());
+    }
+
+    /* the failure of a node reaches await() as it is, not buried under the dependents that failed with it */
+    public void testFailedNodeReportsItsOwnError() throws Exception {
+        TaskGraph graph = new TaskGraph("test", scheduler);
+        IOException cause = new IOException("Cannot download version manifest");
+        AtomicBoolean ran = new AtomicBoolean();
+        TaskGraph.Node<Object> manifest = graph.io("manifest", () -> {
+            throw cause;
+        });
+        graph.io("version json", () -> ran.getAndSet(true), manifest);
+        graph.cpu("arguments", () -> ran.getAndSet(true), manifest);
+
+        IOException e = checkThrows(IOException.class, graph::await);
+        check(e == cause, "await threw " + e);
+        checkEquals(0, e.getSuppressed().length);
+        check(!ran.get(), "dependents of a failed node don't run");
+    }
+
+    public void testIndependentFailuresAreAllReported() throws Exception {
+        TaskGraph graph = new TaskGraph("test", scheduler);
+        IOException assets = new IOException("assets"), libraries = new IOException("libraries");
+        graph.io("assets", () -> {
+            throw assets;
+        });
+        graph.io("libraries", () -> {
+            throw libraries;
+        });
+
+        IOException e = checkThrows(IOException.class, graph::await);
+        check(e == assets || e == libraries, "await threw " + e);
+        checkEquals(1, e.getSuppressed().length);
+        check(e.getSuppressed()[0] == (e == assets ? libraries : assets), "the other failure is attached");
+    }
+
+    public void testAwaitAllSkipsTheSameFailureTwice() throws Exception {
+        IOException cause = new IOException("same");
+        CompletableFuture<Object> failed = new CompletableFuture<>();
+        failed.completeExceptionally(cause);
+        IOException e = checkThrows(IOException.class, () -> TaskScheduler.awaitAll(Arrays.asList(failed, failed, failed)));
+        check(e == cause, "awaitAll threw " + e);
+        checkEquals(0, e.getSuppressed().length);
+    }
+
+    public void testAwaitRethrowsTheTaskException() throws Exception {
+        IOException cause = new IOException("boom");
+        CompletableFuture<Object> task = scheduler.io(() -> {
+            throw cause;
+        });
+        check(checkThrows(IOException.class, () -> TaskScheduler.await(task)) == cause, "same exception");
+    }
+
+    /* a queued task is run by the thread that waits for it, so a full lane can't deadlock on its own tasks */
+    public void testAwaitRunsQueuedTaskInline() throws Exception {
+        TaskScheduler single = new TaskScheduler(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Object> blocker = single.io(() -> release.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Thread> queued = single.io(Thread::currentThread);
+        try {
+            check(TaskScheduler.await(queued) == Thread.currentThread(), "queued task ran inline");
+        } finally {
+            release.countDown();
+        }
+        TaskScheduler.await(blocker);
+    }
+
+    public void testCancelInterruptsRunningTask() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Object> task = scheduler.io(() -> {
+            started.countDown();
+            Thread.sleep(10000);
+            return null;
+        });
+        check(started.await(5, TimeUnit.SECONDS), "task started");
+        task.cancel(true);
+        checkThrows(InterruptedIOException.class, () -> TaskScheduler.await(task));
+        /* the worker is free again and not left interrupted */
+        check(!TaskScheduler.await(scheduler.io(() -> Thread.currentThread().isInterrupted())), "next task isn't interrupted");
+    }
+}
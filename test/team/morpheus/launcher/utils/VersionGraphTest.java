@@ -0,0 +1,127 @@
+package team.morpheus.launcher.utils;
+
+import team.morpheus.launcher.model.products.MojangProduct;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static team.morpheus.launcher.TestRunner.*;
+
+public class VersionGraphTest {
+
+    public void testResolvesWholeChain() throws Exception {
+        File folder = tempFolder();
+        try {
+            write(folder, "optiforge", "forge", null, "a.b:optifine:1", "a.b:shared:2");
+            write(folder, "forge", "vanilla", "net.forge.Main", "a.b:forge:1", "a.b:shared:1", "a.b:own:1");
+            write(folder, "vanilla", null, "net.minecraft.Main", "a.b:lwjgl:3");
+
+            VersionGraph.Chain chain = resolve(folder, "optiforge");
+            checkEquals("optiforge -> forge -> vanilla", chain.toString());
+            checkEquals("vanilla", chain.getRoot().id);
+            /* the nearest level naming a main class wins */
+            checkEquals("net.forge.Main", chain.getMainClass());
+            /* the launched version already has shared, forge keeps only what's its own */
+            checkEquals("[a.b:forge:1, a.b:own:1]", names(chain.getIntermediateLibraries()).toString());
+            checkEquals("[forge, optiforge]", ids(chain.getModloaders()).toString());
+        } finally {
+            deleteTree(folder);
+        }
+    }
+
+    public void testUnchangedChainIsMemoized() throws Exception {
+        File folder = tempFolder();
+        try {
+            write(folder, "fabric", "vanilla", "net.fabric.Main");
+            write(folder, "vanilla", null, "net.minecraft.Main");
+            check(resolve(folder, "fabric") == resolve(folder, "fabric"), "same jsons give back the same chain");
+        } finally {
+            deleteTree(folder);
+        }
+    }
+
+    public void testCycleIsRejected() throws Exception {
+        File folder = tempFolder();
+        try {
+            write(folder, "a", "b", null);
+            write(folder, "b", "c", null);
+            write(folder, "c", "A", null);
+            IOException e = checkThrows(IOException.class, () -> resolve(folder, "a"));
+            check(e.getMessage().startsWith("Cyclic inheritsFrom"), e.getMessage());
+        } finally {
+            deleteTree(folder);
+        }
+    }
+
+    public void testSelfInheritanceIsRejected() throws Exception {
+        File folder = tempFolder();
+        try {
+            write(folder, "a", "a", null);
+            checkThrows(IOException.class, () -> resolve(folder, "a"));
+        } finally {
+            deleteTree(folder);
+        }
+    }
+
+    /* 8 levels are allowed, the 9th one is a broken json */
+    public void testDepthLimit() throws Exception {
+        File folder = tempFolder();
+        try {
+            for (int i = 1; i < 8; i++) write(folder, "v" + i, "v" + (i + 1), null);
+            write(folder, "v8", null, "net.minecraft.Main");
+            checkEquals(8, resolve(folder, "v1").getLevels().size());
+
+            write(folder, "v8", "v9", null);
+            write(folder, "v9", null, "net.minecraft.Main");
+            IOException e = checkThrows(IOException.class, () -> resolve(folder, "v1"));
+            check(e.getMessage().contains("deeper than 8"), e.getMessage());
+        } finally {
+            deleteTree(folder);
+        }
+    }
+
+    public void testMissingParentFails() throws Exception {
+        File folder = tempFolder();
+        try {
+            write(folder, "fabric", "vanilla", null);
+            checkThrows(IOException.class, () -> resolve(folder, "fabric"));
+        } finally {
+            deleteTree(folder);
+        }
+    }
+
+    private static VersionGraph.Chain resolve(File folder, String id) throws IOException {
+        VersionGraph graph = VersionGraph.of(folder);
+        return graph.resolve(graph.load(new File(folder, id + ".json")), parent -> {
+            File file = new File(folder, parent + ".json");
+            if (!file.isFile()) throw new IOException(String.format("No version %s", parent));
+            return file;
+        });
+    }
+
+    private static void write(File folder, String id, String inheritsFrom, String mainClass, String... libraries) throws IOException {
+        StringBuilder json = new StringBuilder(String.format("{\"id\":\"%s\"", id));
+        if (inheritsFrom != null) json.append(String.format(",\"inheritsFrom\":\"%s\"", inheritsFrom));
+        if (mainClass != null) json.append(String.format(",\"mainClass\":\"%s\"", mainClass));
+        json.append(",\"libraries\":[");
+        for (int i = 0; i < libraries.length; i++) json.append(i > 0 ? "," : "").append(String.format("{\"name\":\"%s\"}", libraries[i]));
+        json.append("]}");
+        Files.write(new File(folder, id + ".json").toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> names(List<MojangProduct.Game.Library> libraries) {
+        List<String> names = new ArrayList<>();
+        for (MojangProduct.Game.Library library : libraries) names.add(library.name);
+        return names;
+    }
+
+    private static List<String> ids(List<MojangProduct.Game> levels) {
+        List<String> ids = new ArrayList<>();
+        for (MojangProduct.Game level : levels) ids.add(level.id);
+        return ids;
+    }
+}